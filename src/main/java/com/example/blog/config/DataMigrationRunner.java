@@ -0,0 +1,113 @@
+package com.example.blog.config;
+
+import com.example.blog.dto.post.PostImageView;
+import com.example.blog.dto.post.PostTextView;
+import com.example.blog.repository.PostRepository;
+import com.example.blog.service.ImageVariantService;
+import com.example.blog.util.Excerpts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * One-off data fixes for columns that ddl-auto adds to existing tables but cannot fill in.
+ * Each step is switched on by a property, run once after deploying, and switched off again.
+ */
+@Component
+public class DataMigrationRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataMigrationRunner.class);
+
+    private static final int EXCERPT_BATCH_SIZE = 500;
+    private static final int IMAGE_BATCH_SIZE = 100;
+
+    private final PostRepository postRepository;
+    private final ImageVariantService imageVariants;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final boolean backfillCommentCounts;
+    private final boolean widenPostBody;
+    private final boolean backfillExcerpts;
+    private final boolean backfillImageVariants;
+
+    public DataMigrationRunner(PostRepository postRepository, ImageVariantService imageVariants,
+                               JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               @Value("${blog.migrations.comment-counts:false}") boolean backfillCommentCounts,
+                               @Value("${blog.migrations.post-body-lob:false}") boolean widenPostBody,
+                               @Value("${blog.migrations.post-excerpts:false}") boolean backfillExcerpts,
+                               @Value("${blog.migrations.image-variants:false}") boolean backfillImageVariants) {
+        this.postRepository = postRepository;
+        this.imageVariants = imageVariants;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.backfillCommentCounts = backfillCommentCounts;
+        this.widenPostBody = widenPostBody;
+        this.backfillExcerpts = backfillExcerpts;
+        this.backfillImageVariants = backfillImageVariants;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (backfillCommentCounts) {
+            Integer updated = transaction.execute(tx -> postRepository.recomputeCommentCounts());
+            logger.info("Backfilled comment counts for {} posts", updated);
+        }
+
+        // ddl-auto never changes the type of an existing column, so post.body stays VARCHAR(255) until this runs
+        if (widenPostBody) {
+            jdbcTemplate.execute("ALTER TABLE post MODIFY body LONGTEXT NOT NULL");
+            logger.info("Widened post.body to LONGTEXT");
+        }
+
+        if (backfillExcerpts) {
+            logger.info("Backfilled excerpts for {} posts", backfillExcerpts());
+        }
+
+        if (backfillImageVariants) {
+            logger.info("Created image variants for {} posts", backfillImageVariants());
+        }
+    }
+
+    // One transaction per batch, so a large table is not rewritten under a single lock
+    private int backfillExcerpts() {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            List<PostTextView> batch = transaction.execute(tx -> {
+                List<PostTextView> posts = postRepository.findTextWithoutExcerpt(from, Limit.of(EXCERPT_BATCH_SIZE));
+                posts.forEach(post -> postRepository.setExcerpt(post.getId(), Excerpts.of(post.getBody())));
+                return posts;
+            });
+            if (batch.isEmpty()) {
+                return updated;
+            }
+            updated += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    // Inline rather than through the variant pool, so a large backlog cannot overflow its queue
+    private int backfillImageVariants() {
+        int processed = 0;
+        long afterId = 0;
+        while (true) {
+            List<PostImageView> batch = postRepository.findImagesWithoutVariants(afterId, Limit.of(IMAGE_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                return processed;
+            }
+            batch.forEach(post -> imageVariants.generate(post.getId(), post.getImageUrl()));
+            processed += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+}
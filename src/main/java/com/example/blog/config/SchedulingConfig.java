@@ -0,0 +1,10 @@
+package com.example.blog.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Background jobs such as the view counter flush
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,6 +1,8 @@
 package com.example.blog.config;
 
+import com.example.blog.util.AccessLogFilter;
 import com.example.blog.util.JwtRequestFilter;
+import com.example.blog.util.RateLimitFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -20,11 +22,17 @@ import static org.springframework.security.config.Customizer.withDefaults;
 public class SecurityConfig {
 
     private final JwtRequestFilter jwtRequestFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final AccessLogFilter accessLogFilter;
     private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;  // This should reference Spring's PasswordEncoder
 
-    public SecurityConfig(JwtRequestFilter jwtRequestFilter, UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+    public SecurityConfig(JwtRequestFilter jwtRequestFilter, RateLimitFilter rateLimitFilter,
+                          AccessLogFilter accessLogFilter, UserDetailsService userDetailsService,
+                          PasswordEncoder passwordEncoder) {
         this.jwtRequestFilter = jwtRequestFilter;
+        this.rateLimitFilter = rateLimitFilter;
+        this.accessLogFilter = accessLogFilter;
         this.userDetailsService = userDetailsService;
         this.passwordEncoder = passwordEncoder; // This should now work without issues
     }
@@ -35,12 +43,16 @@ public class SecurityConfig {
                 .cors(withDefaults())  // Enable CORS configuration (applies the CORS settings from WebConfig)
                 .csrf(csrf -> csrf.disable())  // Disable CSRF protection since JWT tokens handle it
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/auth/register","/auth/login","/admin/register","/uploads/**").permitAll()
+                        .requestMatchers("/auth/register","/auth/login","/auth/refresh","/auth/logout","/admin/register","/uploads/**").permitAll()
                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimitFilter, JwtRequestFilter.class)  // Needs the authenticated user as its key
+                .addFilterBefore(accessLogFilter, JwtRequestFilter.class)  // Times everything after it, including 429s
                 .build();
     }
 
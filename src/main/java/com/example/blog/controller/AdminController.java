@@ -3,11 +3,12 @@ package com.example.blog.controller;
 import com.example.blog.dto.CommonApiResponse;
 import com.example.blog.dto.user.RegisterRequestDto;
 import com.example.blog.dto.user.UserDto;
+import com.example.blog.entities.Role;
 import com.example.blog.service.AdminService;
-import com.example.blog.util.JwtUtil;
+import com.example.blog.util.AuthenticatedUser;
+import com.example.blog.util.CurrentUser;
 import exception.GlobalExceptionHandler;
-import io.jsonwebtoken.JwtException;
-import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -20,27 +21,9 @@ import java.util.List;
 public class AdminController {
 
     private final AdminService adminService;
-    private final JwtUtil jwtUtil;
 
-    public AdminController(AdminService adminService , JwtUtil jwtUtil) {
+    public AdminController(AdminService adminService) {
         this.adminService = adminService;
-        this.jwtUtil = jwtUtil;
-    }
-
-    private String validateTokenAndGetEmail(HttpServletRequest request) {
-        String token = request.getHeader("Authorization");
-
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new JwtException("Invalid or missing token.");
-        }
-
-        String email = jwtUtil.extractUsername(token.substring(7));  // Extract email
-
-        if (email == null) {
-            throw new JwtException("Token validation failed, email not found.");
-        }
-
-        return email;
     }
 
 
@@ -54,6 +37,10 @@ public class AdminController {
         } catch (GlobalExceptionHandler.EmailAlreadyExistsException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), "Email already exists", null));
+        } catch (GlobalExceptionHandler.ServiceOverloadedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new CommonApiResponse<>(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, please retry shortly", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
@@ -62,20 +49,15 @@ public class AdminController {
 
     @DeleteMapping("/users/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<CommonApiResponse<String>> deleteUserById(@PathVariable Long id, HttpServletRequest request) {
+    public ResponseEntity<CommonApiResponse<String>> deleteUserById(@PathVariable Long id, @CurrentUser AuthenticatedUser user) {
         try {
-            String email = validateTokenAndGetEmail(request);
-
-            if (!adminService.isAdmin(email)) {
+            if (user.role() != Role.ADMIN) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(new CommonApiResponse<>(HttpStatus.FORBIDDEN.value(), "Access denied. Admin role required.", null));
             }
 
             adminService.deleteUserById(id);
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "User deleted successfully", null));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (GlobalExceptionHandler.UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
@@ -87,20 +69,15 @@ public class AdminController {
 
     @GetMapping("/users")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<CommonApiResponse<List<UserDto>>> getAllUsers(HttpServletRequest request) {
+    public ResponseEntity<CommonApiResponse<List<UserDto>>> getAllUsers(@CurrentUser AuthenticatedUser user) {
         try {
-            String email = validateTokenAndGetEmail(request);
-
-            if (!adminService.isAdmin(email)) {
+            if (user.role() != Role.ADMIN) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(new CommonApiResponse<>(HttpStatus.FORBIDDEN.value(), "Access denied. Admin role required.", null));
             }
 
             List<UserDto> allUsers = adminService.getAllUsers();
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "All users retrieved successfully", allUsers));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
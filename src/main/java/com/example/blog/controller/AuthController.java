@@ -2,10 +2,14 @@ package com.example.blog.controller;
 
 import com.example.blog.dto.CommonApiResponse;
 import com.example.blog.dto.user.LoginRequestDto;
+import com.example.blog.dto.user.RefreshRequestDto;
 import com.example.blog.dto.user.RegisterRequestDto;
+import com.example.blog.dto.user.TokenResponseDto;
 import com.example.blog.dto.user.UserDto;
 import com.example.blog.service.AuthService;
+import com.example.blog.service.RefreshTokenService;
 import exception.GlobalExceptionHandler;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -13,23 +17,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
-import java.util.Map;
-
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
     private final AuthService authService;
+    private final RefreshTokenService refreshTokenService;
 
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, RefreshTokenService refreshTokenService) {
         this.authService = authService;
+        this.refreshTokenService = refreshTokenService;
     }
 
     @PostMapping("/register")
     public ResponseEntity<CommonApiResponse<UserDto>> registerUser(@RequestBody RegisterRequestDto request) {
-        System.out.println("Received registration request: " + request);
-
         if (authService.checkEmailExists(request.getEmail())) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), "Email already exists", null));
@@ -38,6 +39,9 @@ public class AuthController {
         try {
             UserDto registeredUser = authService.registerUser(request);
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "User registered successfully", registeredUser));
+        } catch (GlobalExceptionHandler.ServiceOverloadedException e) {
+            return overloaded()
+                    .body(new CommonApiResponse<>(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, please retry shortly", null));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
@@ -49,22 +53,57 @@ public class AuthController {
 
     @PostMapping("/login")
     public ResponseEntity<CommonApiResponse> loginUser(@RequestBody LoginRequestDto request) {
-        System.out.println("Received registration request: " + request);
         try {
-            String jwt = authService.loginUser(request.getEmail(), request.getPassword());
-            Map<String, String> responseData = new HashMap<>();
-            responseData.put("token", jwt); // Set token in the map
-            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Login successful", responseData));
+            TokenResponseDto tokens = authService.loginUser(request.getEmail(), request.getPassword());
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Login successful", tokens));
         } catch (GlobalExceptionHandler.InvalidCredentialsException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid email or password", null));
         } catch (GlobalExceptionHandler.UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
+        } catch (GlobalExceptionHandler.ServiceOverloadedException e) {
+            return overloaded()
+                    .body(new CommonApiResponse<>(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, please retry shortly", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal Server Error: " + e.getMessage(), null));
         }
     }
 
+    @PostMapping("/refresh")
+    public ResponseEntity<CommonApiResponse<TokenResponseDto>> refresh(@RequestBody RefreshRequestDto request) {
+        try {
+            TokenResponseDto tokens = refreshTokenService.refresh(request.getRefreshToken());
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Token refreshed", tokens));
+        } catch (GlobalExceptionHandler.InvalidRefreshTokenException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal Server Error", null));
+        }
+    }
+
+    // Ends the session the refresh token belongs to, including access tokens already handed out for it
+    @PostMapping("/logout")
+    public ResponseEntity<CommonApiResponse<Void>> logout(@RequestBody RefreshRequestDto request) {
+        try {
+            refreshTokenService.endSession(request.getRefreshToken());
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Logged out", null));
+        } catch (GlobalExceptionHandler.InvalidRefreshTokenException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal Server Error", null));
+        }
+    }
+
+    // Password hashing is saturated; tell the client when to come back instead of holding the connection
+    private static ResponseEntity.BodyBuilder overloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1");
+    }
+
 }
@@ -6,13 +6,13 @@ import com.example.blog.dto.CommonApiResponse;
 import com.example.blog.dto.user.UserDto;
 import com.example.blog.entities.Comment;
 import com.example.blog.service.CommentService;
-import com.example.blog.util.JwtUtil;
+import com.example.blog.util.AuthenticatedUser;
+import com.example.blog.util.CurrentUser;
 import exception.GlobalExceptionHandler;
-import io.jsonwebtoken.JwtException;
-import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,47 +22,26 @@ import java.util.stream.Collectors;
 public class CommentController {
 
     private final CommentService commentService;
-    private final JwtUtil jwtUtil;
 
-    public CommentController(CommentService commentService,JwtUtil jwtUtil){
+    public CommentController(CommentService commentService){
         this.commentService = commentService;
-        this.jwtUtil = jwtUtil;
     }
 
-    private String validateTokenAndGetEmail(HttpServletRequest request) {
-        String token = request.getHeader("Authorization");
-
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new JwtException("Invalid or missing token.");
-        }
-
-        String email = jwtUtil.extractUsername(token.substring(7));  // Extract email
-
-        if (email == null) {
-            throw new JwtException("Token validation failed, email not found.");
-        }
-
-        return email;
-    }
 
     // Create a comment for a post
     @PostMapping("/post/{postId}")
     public ResponseEntity<CommonApiResponse<Comment>> createComment(
             @PathVariable Long postId,
             @RequestBody CommentRequestDto commentRequestDto,
-            HttpServletRequest request) {
+            @CurrentUser AuthenticatedUser user) {
 
         try {
-            String email = validateTokenAndGetEmail(request);
-            Comment comment = commentService.createComment(commentRequestDto, email, postId);
+            Comment comment = commentService.createComment(commentRequestDto, user.id(), postId);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(new CommonApiResponse<>(HttpStatus.CREATED.value(), "Comment created successfully", comment));
         } catch (GlobalExceptionHandler.PostNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Post not found", null));
-        }catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
@@ -74,19 +53,15 @@ public class CommentController {
     public ResponseEntity<CommonApiResponse<Comment>> editComment(
             @PathVariable Long commentId,
             @RequestBody CommentRequestDto commentRequestDto,
-            HttpServletRequest request) {
+            @CurrentUser AuthenticatedUser user) {
 
         try {
-            String email = validateTokenAndGetEmail(request);
-            Comment updatedComment = commentService.editComment(commentId, commentRequestDto, email);
+            Comment updatedComment = commentService.editComment(commentId, commentRequestDto, user.id());
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Comment updated successfully", updatedComment));
         } catch (GlobalExceptionHandler.CommentNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Comment not found", null));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
-        }  catch (Exception e) {
+        } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
         }
@@ -95,18 +70,14 @@ public class CommentController {
     // Delete a comment
     @DeleteMapping("/{commentId}")
     public ResponseEntity<CommonApiResponse<String>> deleteComment(
-            @PathVariable Long commentId, HttpServletRequest request) {
+            @PathVariable Long commentId, @CurrentUser AuthenticatedUser user) {
 
         try {
-            String email = validateTokenAndGetEmail(request);
-            commentService.deleteComment(commentId, email);
+            commentService.deleteComment(commentId, user.id());
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Comment deleted successfully", null));
         } catch (GlobalExceptionHandler.CommentNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Comment not found", null));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
@@ -115,8 +86,14 @@ public class CommentController {
 
     // Get all comments for a specific post
     @GetMapping("/post/{postId}")
-    public ResponseEntity<CommonApiResponse<List<CommentDto>>> getCommentsByPostId(@PathVariable Long postId) {
+    public ResponseEntity<CommonApiResponse<List<CommentDto>>> getCommentsByPostId(@PathVariable Long postId, WebRequest webRequest) {
         try {
+            // Answer conditional requests before any comment is loaded
+            String etag = commentService.getCommentsETag(postId);
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             List<CommentDto> comments = commentService.getCommentsByPostId(postId).stream()
                     .map(comment -> new CommentDto(
                             comment.getId(),
@@ -126,7 +103,8 @@ public class CommentController {
                     ))
                     .collect(Collectors.toList());
 
-            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Comments retrieved successfully", comments));
+            return ResponseEntity.ok().eTag(etag)
+                    .body(new CommonApiResponse<>(HttpStatus.OK.value(), "Comments retrieved successfully", comments));
         } catch (GlobalExceptionHandler.PostNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Post not found", null));
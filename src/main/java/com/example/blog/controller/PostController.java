@@ -1,21 +1,42 @@
 package com.example.blog.controller;
 
 import com.example.blog.dto.CommonApiResponse;
+import com.example.blog.dto.CursorPageDto;
 import com.example.blog.dto.post.PostRequestDto;
 import com.example.blog.dto.post.PostResponseDto;
+import com.example.blog.dto.post.PostSearchResultDto;
+import com.example.blog.dto.post.PostSummaryDto;
+import com.example.blog.dto.post.PostViewCountDto;
 import com.example.blog.entities.Post;
 import com.example.blog.entities.Status;
 import com.example.blog.service.ImageUploadService;
+import com.example.blog.service.PostExportService;
+import com.example.blog.service.PostSearchService;
 import com.example.blog.service.PostService;
-import com.example.blog.util.JwtUtil;
+import com.example.blog.service.PostViewService;
+import com.example.blog.util.AuthenticatedUser;
+import com.example.blog.util.CurrentUser;
+import com.example.blog.util.StreamingMultipart;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import exception.GlobalExceptionHandler;
-import io.jsonwebtoken.JwtException;
 import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -24,98 +45,211 @@ import java.util.List;
 public class PostController {
 
     private final PostService postService;
-    private final JwtUtil jwtUtil;
     private final ImageUploadService imageUploadService;
-
-    private PostController(PostService postService, JwtUtil jwtUtil, ImageUploadService imageUploadService) {
+    private final PostSearchService postSearchService;
+    private final PostExportService postExportService;
+    private final PostViewService postViewService;
+    private final ObjectMapper objectMapper;
+    private final int maxFormFieldSize;
+
+    private PostController(PostService postService, ImageUploadService imageUploadService,
+                           PostSearchService postSearchService, PostExportService postExportService,
+                           PostViewService postViewService, ObjectMapper objectMapper,
+                           @Value("${blog.posts.max-form-field-size:1MB}") DataSize maxFormFieldSize) {
         this.postService = postService;
-        this.jwtUtil = jwtUtil;
         this.imageUploadService = imageUploadService;
+        this.postSearchService = postSearchService;
+        this.postExportService = postExportService;
+        this.postViewService = postViewService;
+        this.objectMapper = objectMapper;
+        this.maxFormFieldSize = Math.toIntExact(maxFormFieldSize.toBytes());
     }
 
 //    private static final Logger logger = LoggerFactory.getLogger(PostController.class);
 
-    private String validateTokenAndGetEmail(HttpServletRequest request) {
-        String token = request.getHeader("Authorization");
 
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new JwtException("Invalid or missing token.");
-        }
+    @PostMapping("/post")
+    public ResponseEntity<CommonApiResponse> createPost(HttpServletRequest request,
+                                                        @CurrentUser AuthenticatedUser user) {
+        try {
+            PostForm form = readPostForm(request, true);
 
-        String email = jwtUtil.extractUsername(token.substring(7));  // Extract email
+            // Create the post with the image URL
+            Post createdPost = postService.createPost(form.post(), user.id(), form.imageUrl());
 
-        if (email == null) {
-            throw new JwtException("Token validation failed, email not found.");
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new CommonApiResponse<>(HttpStatus.CREATED.value(), "Post created successfully", createdPost));
+
+        } catch (GlobalExceptionHandler.UploadTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new CommonApiResponse<>(HttpStatus.PAYLOAD_TOO_LARGE.value(), e.getMessage(), null));
+        } catch (GlobalExceptionHandler.UnsupportedUploadTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(new CommonApiResponse<>(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(), e.getMessage(), null));
+        } catch (GlobalExceptionHandler.InvalidUploadException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
         }
+    }
+
+
+    @GetMapping("/posts")
+    public ResponseEntity<CommonApiResponse<List<PostResponseDto>>> getAllPosts(
+            @RequestParam(value = "summary", defaultValue = "false") boolean summary,
+            @RequestParam(value = "latestComments", required = false) Integer latestComments,
+            WebRequest webRequest) {
+        try {
+            // Answer conditional requests before any post is loaded
+            String etag = postService.getAllPostsETag(summary, latestComments);
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            List<PostResponseDto> posts = postService.getAllPosts(summary, latestComments);  // Get all posts
+            return ResponseEntity.ok().eTag(etag)
+                    .body(new CommonApiResponse<>(HttpStatus.OK.value(), "Posts retrieved successfully", posts));
 
-        return email;
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving posts", null));
+        }
     }
 
+    @GetMapping("/posts/feed")
+    public ResponseEntity<CommonApiResponse<CursorPageDto<PostResponseDto>>> getFeed(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "status", required = false) Status status,
+            @RequestParam(value = "summary", defaultValue = "false") boolean summary,
+            @RequestParam(value = "latestComments", required = false) Integer latestComments,
+            WebRequest webRequest) {
+        try {
+            String etag = postService.getFeedETag(cursor, size, status, summary, latestComments);
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
 
-    @PostMapping("/post")
-    public ResponseEntity<CommonApiResponse> createPost(@RequestPart("post") PostRequestDto postRequestDto,
-                                                        @RequestPart("image") MultipartFile image,
-                                                        HttpServletRequest request) {
+            CursorPageDto<PostResponseDto> page = postService.getFeed(cursor, size, status, summary, latestComments);
+            return ResponseEntity.ok().eTag(etag)
+                    .body(new CommonApiResponse<>(HttpStatus.OK.value(), "Posts retrieved successfully", page));
+
+        } catch (GlobalExceptionHandler.InvalidCursorException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), "Invalid cursor.", null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving posts", null));
+        }
+    }
 
+    // Bulk export of published posts and the caller's own; rows are streamed to the client as they are read
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPosts(
+            @RequestParam(value = "format", defaultValue = "NDJSON") PostExportService.Format format,
+            @CurrentUser AuthenticatedUser user) {
+        StreamingResponseBody body = out -> postExportService.export(user.id(), format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"posts." + format.getExtension() + "\"")
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<CommonApiResponse<PostSearchResultDto>> searchPosts(
+            @RequestParam("q") String query,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
         try {
-            String email = validateTokenAndGetEmail(request);
-            String imageUrl = null;
+            PostSearchService.SearchHits hits = postSearchService.search(query, page, size);
+            List<PostResponseDto> posts = postService.getPostSummaries(hits.postIds());
+            PostSearchResultDto result = new PostSearchResultDto(query, page, size, hits.total(), posts);
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Search results retrieved successfully", result));
 
-            // Handle image upload if present
-            if (!image.isEmpty()) {
-                imageUrl = imageUploadService.uploadImage(image);
-            }
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while searching posts", null));
+        }
+    }
 
-            // Create the post with the image URL
-            Post createdPost = postService.createPost(postRequestDto, email, imageUrl);
+    @GetMapping("/posts/{postId}")
+    public ResponseEntity<CommonApiResponse<PostResponseDto>> getPostById(@PathVariable Long postId, WebRequest webRequest) {
+        try {
+            String etag = postService.getPostETag(postId);  // Also confirms the post exists
+            postViewService.recordView(postId);  // A revalidated read is still a view
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
 
-            return ResponseEntity.status(HttpStatus.CREATED)
-                    .body(new CommonApiResponse<>(HttpStatus.CREATED.value(), "Post created successfully", createdPost));
+            PostResponseDto post = postService.getPostById(postId);
+            return ResponseEntity.ok().eTag(etag)
+                    .body(new CommonApiResponse<>(HttpStatus.OK.value(), "Post retrieved successfully", post));
 
-        } catch (GlobalExceptionHandler.UserNotFoundException e) {
+        } catch (GlobalExceptionHandler.PostNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
+                    .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Post not found.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving the post", null));
         }
     }
 
-
-    @GetMapping("/posts")
-    public ResponseEntity<CommonApiResponse<List<PostResponseDto>>> getAllPosts(HttpServletRequest request) {
+    @GetMapping("/posts/{postId}/views")
+    public ResponseEntity<CommonApiResponse<PostViewCountDto>> getPostViews(@PathVariable Long postId) {
         try {
-            String email = validateTokenAndGetEmail(request);  // Validate the token and get the email
+            PostViewCountDto views = new PostViewCountDto(postId, postViewService.getViewCount(postId));
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "View count retrieved successfully", views));
 
-            List<PostResponseDto> posts = postService.getAllPosts();  // Get all posts
-            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Posts retrieved successfully", posts));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving the view count", null));
+        }
+    }
+
+    // Most viewed posts with recent views weighing more, as summaries without comments
+    @GetMapping("/posts/trending")
+    public ResponseEntity<CommonApiResponse<List<PostResponseDto>>> getTrendingPosts(
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        try {
+            int size = Math.max(0, Math.min(limit, postViewService.getTrendingSize()));
+            List<PostResponseDto> posts = postService.getPostSummaries(postViewService.getTrendingPostIds(size));
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Trending posts retrieved successfully", posts));
 
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving posts", null));
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving trending posts", null));
         }
     }
 
     @GetMapping("/posts/user")
-    public ResponseEntity<CommonApiResponse<List<Post>>> getPostsByUser(HttpServletRequest request) {
+    public ResponseEntity<CommonApiResponse<List<Post>>> getPostsByUser(@CurrentUser AuthenticatedUser user) {
         try {
-            String email = validateTokenAndGetEmail(request);  // Validate the token and get the email
-
-            List<Post> userPosts = postService.getPostsByEmail(email);  // Get user-specific posts
+            List<Post> userPosts = postService.getPostsByUser(user.id());  // Get user-specific posts
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "User posts retrieved successfully", userPosts));
 
-        } catch (GlobalExceptionHandler.UserNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving user posts", null));
+        }
+    }
+
+    // Keyset-paginated summaries of the caller's posts, newest first; /posts/user and /posts/filter
+    // keep returning every post for existing clients
+    @GetMapping("/posts/user/feed")
+    public ResponseEntity<CommonApiResponse<CursorPageDto<PostSummaryDto>>> getUserFeed(
+            @RequestParam(value = "status", required = false) Status status,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            @CurrentUser AuthenticatedUser user) {
+        try {
+            CursorPageDto<PostSummaryDto> page = postService.getPostsByUser(user.id(), status, cursor, size);
+            return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "User posts retrieved successfully", page));
+
+        } catch (GlobalExceptionHandler.InvalidCursorException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), "Invalid cursor.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving user posts", null));
@@ -123,24 +257,15 @@ public class PostController {
     }
 
     @DeleteMapping("/posts/{postId}")
-    public ResponseEntity<CommonApiResponse<Void>> deletePost(@PathVariable Long postId, HttpServletRequest request) {
+    public ResponseEntity<CommonApiResponse<Void>> deletePost(@PathVariable Long postId, @CurrentUser AuthenticatedUser user) {
 
         try {
-            String email = validateTokenAndGetEmail(request);  // Validate the token and get the email
-
-            List<Post> userPosts = postService.getPostsByEmail(email);
-            postService.deletePost(postId, email);
+            postService.deletePost(postId, user.id());
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Post deleted successfully", null));
-        } catch (GlobalExceptionHandler.UserNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found.", null));
         } catch (GlobalExceptionHandler.PostNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Post not found.", null));
-        }catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
-        }  catch (Exception e) {
+        } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while deleting the post.", null));
         }
@@ -148,50 +273,105 @@ public class PostController {
 
     @PutMapping("/posts/{postId}")
     public ResponseEntity<CommonApiResponse<Post>> updatePost(@PathVariable Long postId,
-                                                              @RequestPart("post") PostRequestDto postRequestDto,
-                                                              @RequestPart(value = "image", required = false) MultipartFile image,
-                                                              HttpServletRequest request) {
-
+                                                              HttpServletRequest request,
+                                                              @CurrentUser AuthenticatedUser user) {
         try {
-            String email = validateTokenAndGetEmail(request);
-            System.out.println("Email retrieved: " + email);
-
-            Post updatedPost = postService.updatePost(postId, postRequestDto, email, image);
+            PostForm form = readPostForm(request, false);
+            Post updatedPost = postService.updatePost(postId, form.post(), user.id(), form.imageUrl());
 
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Post updated successfully", updatedPost));
-        } catch (GlobalExceptionHandler.UserNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found.", null));
+        } catch (GlobalExceptionHandler.UploadTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new CommonApiResponse<>(HttpStatus.PAYLOAD_TOO_LARGE.value(), e.getMessage(), null));
+        } catch (GlobalExceptionHandler.UnsupportedUploadTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(new CommonApiResponse<>(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(), e.getMessage(), null));
+        } catch (GlobalExceptionHandler.InvalidUploadException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new CommonApiResponse<>(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
         } catch (GlobalExceptionHandler.PostNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "Post not found.", null));
-        } catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Another update of the same post was saved in between
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new CommonApiResponse<>(HttpStatus.CONFLICT.value(), "The post was changed meanwhile, please retry.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while updating the post.", null));
         }
     }
 
-
     @GetMapping("/posts/filter")
-    public ResponseEntity<CommonApiResponse<List<Post>>> getPostsByStatus(@RequestParam("status") Status status, HttpServletRequest request) {
+    public ResponseEntity<CommonApiResponse<List<Post>>> getPostsByStatus(@RequestParam("status") Status status,
+                                                                          @CurrentUser AuthenticatedUser user) {
 
         try {
-            String email = validateTokenAndGetEmail(request);
-            System.out.println("Email retrieved: " + email);
             // Call service to get posts by status
-            List<Post> filteredPosts = postService.getPostsByStatus(email,status);
+            List<Post> filteredPosts = postService.getPostsByStatus(user.id(), status);
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Posts filtered by status retrieved successfully", filteredPosts));
-        }catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
-        }  catch (Exception e) {
+        } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred while retrieving filtered posts.", null));
         }
     }
 
 
+    // The "post" JSON part and the upload already stored from the "image" part, if one was sent
+    private record PostForm(PostRequestDto post, String imageUrl) {
+    }
+
+    /**
+     * Reads a post form as it arrives: the "post" part is bound as JSON and the "image" part is
+     * streamed straight into upload storage, so neither the container nor this method holds the image.
+     * An image stored for a form that then fails is not referenced by any post, so
+     * UploadGarbageCollector removes it once the grace period is over.
+     */
+    private PostForm readPostForm(HttpServletRequest request, boolean imageRequired) throws IOException {
+        if (!StreamingMultipart.isMultipart(request)) {
+            throw new GlobalExceptionHandler.InvalidUploadException("Expected a multipart/form-data request");
+        }
+        PostRequestDto post = null;
+        String imageUrl = null;
+        boolean imageSent = false;
+        try {
+            FileItemIterator parts = StreamingMultipart.parts(request);
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if ("post".equals(part.getFieldName()) && post == null) {
+                    try (InputStream in = part.openStream()) {
+                        byte[] json = in.readNBytes(maxFormFieldSize + 1);
+                        if (json.length > maxFormFieldSize) {
+                            throw new GlobalExceptionHandler.UploadTooLargeException("Post is larger than " + maxFormFieldSize + " bytes");
+                        }
+                        post = objectMapper.readValue(json, PostRequestDto.class);
+                    }
+                } else if ("image".equals(part.getFieldName()) && !imageSent) {
+                    imageSent = true;
+                    // A file input left empty still sends the part, without a file name
+                    if (part.getName() == null || part.getName().isEmpty()) {
+                        continue;
+                    }
+                    String declaredType = part.getContentType();
+                    if (declaredType != null && !declaredType.startsWith("image/")
+                            && !declaredType.equals(MediaType.APPLICATION_OCTET_STREAM_VALUE)) {
+                        throw new GlobalExceptionHandler.UnsupportedUploadTypeException("Only image uploads are accepted");
+                    }
+                    try (InputStream in = part.openStream()) {
+                        imageUrl = imageUploadService.store(in);
+                    }
+                }
+                // Anything else is skipped unread; the iterator discards it on the way to the next part
+            }
+            if (post == null) {
+                throw new GlobalExceptionHandler.InvalidUploadException("Missing part \"post\"");
+            }
+            if (imageRequired && !imageSent) {
+                throw new GlobalExceptionHandler.InvalidUploadException("Missing part \"image\"");
+            }
+            return new PostForm(post, imageUrl);
+        } catch (FileUploadException | JsonProcessingException e) {
+            throw new GlobalExceptionHandler.InvalidUploadException("Malformed post form: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,209 @@
+package com.example.blog.controller;
+
+import com.example.blog.service.HotImageCache;
+import com.example.blog.service.ImageUploadService;
+import com.example.blog.service.UploadStorage;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves uploaded images. The content behind an upload URL never changes (content-addressed now,
+ * UUID-named before), so responses are cacheable forever.
+ *
+ * Uploads the storage holds in memory, and frequently requested files cached by HotImageCache, are
+ * written from their buffers. Other files go out through Tomcat's sendfile when the connector offers
+ * it, so the kernel copies the file straight to the socket, or else through FileChannel.transferTo. A single byte range is
+ * honoured, multi-range requests get the whole file.
+ */
+@RestController
+public class UploadController {
+
+    // Request attributes of Tomcat's sendfile support (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_CONTROL = "public, max-age=" + TimeUnit.DAYS.toSeconds(365) + ", immutable";
+
+    private final ImageUploadService imageUploadService;
+    private final HotImageCache hotImages;
+    private final long sendfileThreshold;
+
+    public UploadController(ImageUploadService imageUploadService, HotImageCache hotImages,
+                            @Value("${blog.uploads.sendfile-threshold:49152}") long sendfileThreshold) {
+        this.imageUploadService = imageUploadService;
+        this.hotImages = hotImages;
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String url = UriUtils.decode(request.getRequestURI().substring(request.getContextPath().length()),
+                StandardCharsets.UTF_8);
+        // A cached upload is answered without asking the storage at all
+        HotImageCache.Entry cached = hotImages.get(url);
+        ByteBuffer content;
+        Path file = null;
+        long length;
+        long lastModified;
+        if (cached != null) {
+            content = cached.content();
+            length = cached.length();
+            lastModified = cached.lastModified();
+        } else {
+            UploadStorage.Upload upload = imageUploadService.find(url);
+            if (upload == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            length = upload.length();
+            lastModified = upload.lastModified();
+            content = upload.content();
+            file = upload.file();
+            if (content == null) {
+                cached = hotImages.admit(url, upload);
+                if (cached != null) {
+                    content = cached.content();
+                }
+            }
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        // HTTP dates have whole seconds
+        long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(url)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length;  // Exclusive
+        HttpRange range = singleRange(request, lastModified);
+        if (range != null) {
+            if (length == 0 || range.getRangeStart(length) >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length) + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        response.setContentLengthLong(end - start);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (content != null) {
+            write(content, start, end, response);
+            return;
+        }
+        if (end - start >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat writes the file after this method returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        transfer(file, start, end, response);
+    }
+
+    // Null when the whole file should be sent: no Range, a stale If-Range, or several ranges
+    private static HttpRange singleRange(HttpServletRequest request, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        long ifRange = dateHeaderOrMinusOne(request, HttpHeaders.IF_RANGE);
+        if (request.getHeader(HttpHeaders.IF_RANGE) != null && lastModified / 1000 != ifRange / 1000) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;  // Malformed: ignore it, as RFC 9110 allows
+        }
+    }
+
+    // If-Range may also carry an ETag, which never matches since none is issued
+    private static long dateHeaderOrMinusOne(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // Tomcat passes a buffer larger than its own straight to the socket channel, so a direct buffer
+    // reaches the socket without a copy on the heap
+    private static void write(ByteBuffer content, long start, long end, HttpServletResponse response) throws IOException {
+        ByteBuffer slice = content.duplicate();
+        slice.position((int) start).limit((int) end);
+
+        // Commit the headers through any wrappers first (Spring Security adds its own on commit), then
+        // write to the connector's stream, which takes a ByteBuffer where a wrapper would want a byte[]
+        response.flushBuffer();
+        ServletResponse raw = response;
+        while (raw instanceof ServletResponseWrapper wrapper) {
+            raw = wrapper.getResponse();
+        }
+        OutputStream out = raw.getOutputStream();
+        if (out instanceof CoyoteOutputStream coyote) {
+            coyote.write(slice);
+        } else {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (slice.hasRemaining()) {
+                target.write(slice);
+            }
+        }
+        out.flush();
+    }
+
+    private static void transfer(Path file, long start, long end, HttpServletResponse response) throws IOException {
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+        out.flush();
+    }
+}
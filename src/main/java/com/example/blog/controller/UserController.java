@@ -4,10 +4,9 @@ import com.example.blog.dto.CommonApiResponse;
 import com.example.blog.dto.user.UserDto;
 import com.example.blog.dto.user.UserRequestDto;
 import com.example.blog.service.UserService;
-import com.example.blog.util.JwtUtil;
+import com.example.blog.util.AuthenticatedUser;
+import com.example.blog.util.CurrentUser;
 import exception.GlobalExceptionHandler;
-import io.jsonwebtoken.JwtException;
-import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,62 +16,36 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
-    private final JwtUtil jwtUtil;
 
-    public UserController(UserService userService, JwtUtil jwtUtil) {
+    public UserController(UserService userService) {
         this.userService = userService;
-        this.jwtUtil = jwtUtil;
-    }
-
-    private String validateTokenAndGetEmail(HttpServletRequest request) {
-        String token = request.getHeader("Authorization");
-
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new JwtException("Invalid or missing token.");
-        }
-
-        String email = jwtUtil.extractUsername(token.substring(7));  // Extract email
-
-        if (email == null) {
-            throw new JwtException("Token validation failed, email not found.");
-        }
-
-        return email;
     }
 
 
     @PatchMapping("/update")
-    public ResponseEntity<CommonApiResponse<UserDto>> updateUserProfile(@RequestBody UserRequestDto userRequestDto, HttpServletRequest request) {
-        String email = validateTokenAndGetEmail(request);
+    public ResponseEntity<CommonApiResponse<UserDto>> updateUserProfile(@RequestBody UserRequestDto userRequestDto, @CurrentUser AuthenticatedUser user) {
 
         try {
-            UserDto updatedUser = userService.updateUserProfile(email, userRequestDto);
+            UserDto updatedUser = userService.updateUserProfile(user.id(), userRequestDto);
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Profile updated successfully", updatedUser));
         } catch (GlobalExceptionHandler.UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
-        }catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
-        }  catch (Exception e) {
+        } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
         }
     }
 
     @DeleteMapping("")
-    public ResponseEntity<CommonApiResponse<Void>> deleteUserAccount(HttpServletRequest request) {
-        String email = validateTokenAndGetEmail(request);
+    public ResponseEntity<CommonApiResponse<Void>> deleteUserAccount(@CurrentUser AuthenticatedUser user) {
 
         try {
-            userService.deleteUserAccount(email);
+            userService.deleteUserAccount(user.id());
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Account deleted successfully", null));
         } catch (GlobalExceptionHandler.UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
-        }catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
@@ -80,18 +53,14 @@ public class UserController {
     }
 
     @GetMapping("")
-    public ResponseEntity<CommonApiResponse<UserDto>> getUserProfile(HttpServletRequest request) {
-        String email = validateTokenAndGetEmail(request);
+    public ResponseEntity<CommonApiResponse<UserDto>> getUserProfile(@CurrentUser AuthenticatedUser user) {
 
         try {
-            UserDto userDto = userService.getUserProfile(email);
+            UserDto userDto = userService.getUserProfile(user.id());
             return ResponseEntity.ok(new CommonApiResponse<>(HttpStatus.OK.value(), "Profile retrieved successfully", userDto));
         } catch (GlobalExceptionHandler.UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new CommonApiResponse<>(HttpStatus.NOT_FOUND.value(), "User not found", null));
-        }catch (JwtException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new CommonApiResponse<>(HttpStatus.UNAUTHORIZED.value(), "Invalid token.", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new CommonApiResponse<>(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An error occurred", null));
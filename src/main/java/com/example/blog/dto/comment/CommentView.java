@@ -0,0 +1,15 @@
+package com.example.blog.dto.comment;
+
+import java.time.LocalDateTime;
+
+// Flat row returned by native comment queries; mapped to CommentDto by the services
+public interface CommentView {
+    Long getId();
+    String getBody();
+    LocalDateTime getCreatedAt();
+    Long getPostId();
+    Long getUserId();
+    String getUserName();
+    String getUserEmail();
+    String getUserRole();
+}
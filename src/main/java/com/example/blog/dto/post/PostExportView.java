@@ -0,0 +1,15 @@
+package com.example.blog.dto.post;
+
+import com.example.blog.entities.Status;
+
+// One row of the bulk export; a projection, so nothing is held in the persistence context
+public interface PostExportView {
+    Long getId();
+    String getTitle();
+    String getBody();
+    Status getStatus();
+    String getImageUrl();
+    long getCommentCount();
+    Long getUserId();
+    String getUserName();
+}
@@ -0,0 +1,8 @@
+package com.example.blog.dto.post;
+
+// Every upload a post points at, for the orphaned upload sweep
+public interface PostImageUrlsView {
+    String getImageUrl();
+    String getThumbnailUrl();
+    String getMediumUrl();
+}
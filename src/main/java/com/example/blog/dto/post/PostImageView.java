@@ -0,0 +1,7 @@
+package com.example.blog.dto.post;
+
+// A post's original image, for generating variants of existing uploads
+public interface PostImageView {
+    Long getId();
+    String getImageUrl();
+}
@@ -12,10 +12,13 @@ import java.util.List;
 public class PostResponseDto {
     private Long id;
     private String title;
-    private String body;
+    private String body;     // Only set on the single-post view
+    private String excerpt;
     private String status;
-    private String imageUrl;
+    private String imageUrl;  // Original on the single-post view; list views get the medium variant once it exists
+    private String thumbnailUrl;
     private UserDto user;
-    private List<CommentDto> comment;
+    private long commentCount;
+    private List<CommentDto> comment;  // All comments, or only the latest few in summary mode
 
 }
@@ -0,0 +1,18 @@
+package com.example.blog.dto.post;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostSearchResultDto {
+    private String query;
+    private int page;
+    private int size;
+    private long total;
+    private List<PostResponseDto> items;  // Best match first
+}
@@ -0,0 +1,20 @@
+package com.example.blog.dto.post;
+
+import com.example.blog.entities.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A row of an author's own post list, selected straight into the DTO without loading the entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostSummaryDto {
+    private Long id;
+    private String title;
+    private String excerpt;
+    private Status status;
+    private String imageUrl;  // Medium variant once it exists, else the original
+    private String thumbnailUrl;
+    private long commentCount;
+}
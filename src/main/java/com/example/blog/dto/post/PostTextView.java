@@ -0,0 +1,8 @@
+package com.example.blog.dto.post;
+
+// Just the searchable text of a post, for bulk index builds
+public interface PostTextView {
+    Long getId();
+    String getTitle();
+    String getBody();
+}
@@ -0,0 +1,8 @@
+package com.example.blog.dto.post;
+
+// Id, version and revision of a post, enough to tell whether a listing changed
+public interface PostVersionView {
+    Long getId();
+    long getVersion();
+    long getRevision();
+}
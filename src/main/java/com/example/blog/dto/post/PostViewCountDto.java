@@ -0,0 +1,13 @@
+package com.example.blog.dto.post;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostViewCountDto {
+    private Long postId;
+    private long views;  // Flushed total plus views still waiting in memory
+}
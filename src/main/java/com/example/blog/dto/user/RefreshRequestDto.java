@@ -0,0 +1,10 @@
+package com.example.blog.dto.user;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefreshRequestDto {
+    private String refreshToken;
+}
@@ -0,0 +1,12 @@
+package com.example.blog.dto.user;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenResponseDto {
+    private String token;  // Short-lived access token for the Authorization header
+    private String refreshToken;  // Single use; exchange it at /auth/refresh for the next pair
+    private long expiresIn;  // Seconds until the access token expires
+}
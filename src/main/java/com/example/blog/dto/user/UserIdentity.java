@@ -0,0 +1,12 @@
+package com.example.blog.dto.user;
+
+import com.example.blog.entities.Role;
+import com.example.blog.entities.User;
+
+// What authentication needs to know about a user; immutable so it can be shared from the identity cache
+public record UserIdentity(Long id, String email, String name, Role role, String passwordHash) {
+
+    public static UserIdentity of(User user) {
+        return new UserIdentity(user.getId(), user.getEmail(), user.getName(), user.getRole(), user.getPassword());
+    }
+}
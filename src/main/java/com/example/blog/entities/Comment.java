@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -24,12 +25,17 @@ public class Comment {
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+
     @ManyToOne
     @JoinColumn(name = "user_id")
     @JsonIgnore // Prevent recursion
     private User user;  // The user who wrote the comment
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)  // Feed queries already hold the post; don't reload it per comment
     @JoinColumn(name = "post_id")
     @JsonIgnore
     private Post post;  // The post the comment belongs to
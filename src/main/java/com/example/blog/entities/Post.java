@@ -1,15 +1,22 @@
 package com.example.blog.entities;
 
+import com.example.blog.util.Excerpts;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_post_status_id", columnList = "status, id"),  // Keyset feed filtered by status
+        @Index(name = "idx_post_user_id", columnList = "user_id, id"),  // An author's posts, newest first
+        @Index(name = "idx_post_user_status_id", columnList = "user_id, status, id")  // ... filtered by status
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,19 +28,50 @@ public class Post {
     @Column(nullable = false)
     private String title;
 
+    // Can be long; only the single-post view loads it (needs bytecode enhancement, see pom.xml)
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
     @Column(nullable = false)
     private String body;
 
+    // Plain-text teaser of the body, served by list views; kept in step with body by PostService
+    @Column(length = Excerpts.MAX_LENGTH)
+    private String excerpt;
+
     @Enumerated(EnumType.STRING)
     private Status status;  // Published or Draft
 
     @Column
-    private String imageUrl;
+    private String imageUrl;  // The original upload
+
+    // Downscaled copies of the image for list views; null until ImageVariantService has made them
+    @Column
+    private String thumbnailUrl;
+
+    @Column
+    private String mediumUrl;
 
     @ManyToOne
     @JoinColumn(name = "user_id")
     private User user;  // The user who created the post
 
+    // Maintained by CommentService with atomic UPDATEs, so saving a loaded Post must never write it back
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long commentCount;
+
+    // Optimistic lock for saves of the entity itself
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+
+    // Bumped by the atomic UPDATEs (comments, excerpt, image variants, profile edits of the users shown)
+    // that bypass the entity, so they never invalidate a loaded copy; ETags combine it with version
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long revision;
+
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL)
     @JsonIgnore
     private List<Comment> comments = new ArrayList<>();
@@ -0,0 +1,24 @@
+package com.example.blog.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Flushed view total of a post, kept out of the post row so counting never touches its version or locks
+@Entity
+@Table(name = "post_view_count")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostViewCount {
+    @Id
+    @Column(name = "post_id")
+    private Long postId;
+
+    @Column(nullable = false)
+    private long views;
+}
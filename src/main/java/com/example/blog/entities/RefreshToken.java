@@ -0,0 +1,52 @@
+package com.example.blog.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One link in a session's chain of refresh tokens. Every refresh marks the presented token used and
+ * issues the next one in the same session; presenting a used token again means it was copied, so the
+ * whole session is revoked.
+ *
+ * Only a SHA-256 of the token is stored. user_id is a plain column rather than a foreign key so that
+ * deleting a user is not blocked; its leftover rows fail the token-version check and are purged on expiry.
+ */
+@Entity
+@Table(name = "refresh_token", indexes = {
+        @Index(name = "idx_refresh_token_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_refresh_token_session", columnList = "session_id"),
+        @Index(name = "idx_refresh_token_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    // Shared by every token of one login, and carried as "sid" by the access tokens minted from them
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // The user's token version at login; a bump (email change, deletion) ends the session
+    @Column(nullable = false)
+    private long tokenVersion;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    private Instant usedAt;
+
+    private Instant revokedAt;
+}
@@ -0,0 +1,38 @@
+package com.example.blog.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One distinct upload, stored once under uploads/ab/cd/<hash> however often its bytes are uploaded.
+ * There is no reference count: whether a file is still needed is decided by the orphan sweep from
+ * what posts point at, never inline, where a concurrent upload of the same bytes could lose its file.
+ */
+@Entity
+@Table(name = "stored_file",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stored_file_url", columnNames = "url"))  // Sweep deletes by url
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+    @Id
+    @Column(length = 64)
+    private String hash;  // Hex SHA-256 of the content
+
+    @Column(nullable = false)
+    private String url;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
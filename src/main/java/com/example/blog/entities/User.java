@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.List;
 
@@ -29,6 +30,12 @@ public class User {
     @Enumerated(EnumType.STRING)
     private Role role;  // Role: ADMIN or USER
 
+    // Carried in every token as "ver"; bumping it revokes all tokens issued before. Only changed by UPDATE queries
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long tokenVersion;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     @JsonIgnore
     private List<Post> posts;
@@ -1,14 +1,37 @@
 package com.example.blog.repository;
 
+import com.example.blog.dto.comment.CommentView;
 import com.example.blog.entities.Comment;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByPostId(Long postId); // Get all comments by post
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostIdOrderByCreatedAtAscIdAsc(Long postId); // Get all comments by post, authors joined in
     Optional<Comment> findByIdAndUserId(Long commentId, Long userId); // Find a specific comment for a user
+
+    // Comments of several posts at once, authors joined in; used to assemble a whole feed page in one query
+    @EntityGraph(attributePaths = "user")
+    List<Comment> findByPostIdInOrderByCreatedAtAscIdAsc(Collection<Long> postIds);
+
+    // The newest `perPost` comments of each post, oldest first, in a single statement
+    @Query(value = """
+            select c.id as id, c.body as body, c.created_at as createdAt, c.post_id as postId,
+                   u.id as userId, u.name as userName, u.email as userEmail, u.role as userRole
+            from (select c.*, row_number() over (partition by c.post_id order by c.created_at desc, c.id desc) as rn
+                  from comment c
+                  where c.post_id in (:postIds)) c
+            join user u on u.id = c.user_id
+            where c.rn <= :perPost
+            order by c.post_id, c.created_at, c.id
+            """, nativeQuery = true)
+    List<CommentView> findLatestByPostIds(@Param("postIds") Collection<Long> postIds, @Param("perPost") int perPost);
 }
@@ -1,16 +1,148 @@
 package com.example.blog.repository;
 
+import com.example.blog.dto.post.PostExportView;
+import com.example.blog.dto.post.PostImageUrlsView;
+import com.example.blog.dto.post.PostImageView;
+import com.example.blog.dto.post.PostSummaryDto;
+import com.example.blog.dto.post.PostTextView;
+import com.example.blog.dto.post.PostVersionView;
 import com.example.blog.entities.Post;
 import com.example.blog.entities.Status;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
-    List<Post> findByUserId(Long user_id); // Implement this query method
+    // Whole entities for the legacy list endpoints, which serialize the body too. Naming the lazy body in
+    // the graph loads it in the same statement instead of one extra select per post
+    @EntityGraph(attributePaths = {"user", "body"})
+    List<Post> findByUserId(Long userId);
+
     // Find posts by user ID and status
+    @EntityGraph(attributePaths = {"user", "body"})
     List<Post> findByUserIdAndStatus(Long userId, Status status);
+
+    // Ids of an author's posts, collected before deleting the user whose cascade removes them
+    @Query("select p.id from Post p where p.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    // Keyset pages of an author's posts, newest first, served from idx_post_user_id / idx_post_user_status_id
+    @Query("select new com.example.blog.dto.post.PostSummaryDto(p.id, p.title, p.excerpt, p.status, " +
+            "coalesce(p.mediumUrl, p.imageUrl), p.thumbnailUrl, p.commentCount) " +
+            "from Post p where p.user.id = :userId and p.id < :before order by p.id desc")
+    List<PostSummaryDto> findSummariesByUser(@Param("userId") Long userId, @Param("before") Long before, Limit limit);
+
+    @Query("select new com.example.blog.dto.post.PostSummaryDto(p.id, p.title, p.excerpt, p.status, " +
+            "coalesce(p.mediumUrl, p.imageUrl), p.thumbnailUrl, p.commentCount) " +
+            "from Post p where p.user.id = :userId and p.status = :status and p.id < :before order by p.id desc")
+    List<PostSummaryDto> findSummariesByUserAndStatus(@Param("userId") Long userId, @Param("status") Status status,
+                                                      @Param("before") Long before, Limit limit);
+
+    // All posts with their authors joined in, so mapping to DTOs does not fire a query per row
+    @EntityGraph(attributePaths = "user")
+    List<Post> findAllWithUserBy();
+
+    @EntityGraph(attributePaths = "user")
+    Optional<Post> findWithUserById(Long id);
+
+    @EntityGraph(attributePaths = "user")
+    List<Post> findWithUserByIdIn(Collection<Long> ids);
+
+    // Posts in the given status plus every post of the given user, with their authors, read through a
+    // server-side cursor (needs useCursorFetch on MySQL). Must be consumed inside a transaction and closed.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select p.id as id, p.title as title, p.body as body, p.status as status, p.imageUrl as imageUrl, " +
+            "p.commentCount as commentCount, u.id as userId, u.name as userName " +
+            "from Post p join p.user u where p.status = :status or u.id = :userId order by p.id")
+    Stream<PostExportView> streamForExport(@Param("status") Status status, @Param("userId") Long userId);
+
+    // Same cursor caveats as streamForExport
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select p.imageUrl as imageUrl, p.thumbnailUrl as thumbnailUrl, p.mediumUrl as mediumUrl " +
+            "from Post p where p.imageUrl is not null")
+    Stream<PostImageUrlsView> streamImageUrls();
+
+    // Ascending id batches of posts still missing an excerpt, for the one-off backfill
+    @Query("select p.id as id, p.title as title, p.body as body from Post p where p.excerpt is null and p.id > :afterId order by p.id")
+    List<PostTextView> findTextWithoutExcerpt(@Param("afterId") Long afterId, Limit limit);
+
+    // Only applies while the post still shows the image the variants were made from
+    @Transactional
+    @Modifying
+    @Query("update Post p set p.thumbnailUrl = :thumbnailUrl, p.mediumUrl = :mediumUrl, p.revision = p.revision + 1 " +
+            "where p.id = :postId and p.imageUrl = :imageUrl")
+    int setImageVariants(@Param("postId") Long postId, @Param("imageUrl") String imageUrl,
+                         @Param("thumbnailUrl") String thumbnailUrl, @Param("mediumUrl") String mediumUrl);
+
+    // Ascending id batches of posts whose image has no variants yet, for the one-off backfill
+    @Query("select p.id as id, p.imageUrl as imageUrl from Post p " +
+            "where p.imageUrl is not null and p.thumbnailUrl is null and p.id > :afterId order by p.id")
+    List<PostImageView> findImagesWithoutVariants(@Param("afterId") Long afterId, Limit limit);
+
+    @Modifying
+    @Query("update Post p set p.excerpt = :excerpt, p.revision = p.revision + 1 where p.id = :postId")
+    int setExcerpt(@Param("postId") Long postId, @Param("excerpt") String excerpt);
+
+    // Ascending id batches of searchable text, for walking the whole table without holding it in memory
+    @Query("select p.id as id, p.title as title, p.body as body from Post p where p.status = :status and p.id > :afterId order by p.id")
+    List<PostTextView> findTextBatch(@Param("status") Status status, @Param("afterId") Long afterId, Limit limit);
+
+    // Keyset pages for the feed, newest first. Pass Long.MAX_VALUE as the cursor for the first page.
+    @EntityGraph(attributePaths = "user")
+    List<Post> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
+
+    @EntityGraph(attributePaths = "user")
+    List<Post> findByStatusAndIdLessThanOrderByIdDesc(Status status, Long id, Limit limit);
+
+    // Atomic in-place update of the denormalized counter; returns 0 when the post does not exist.
+    // Also bumps the revision, since the post's listing representation changes with its comments.
+    @Modifying
+    @Query("update Post p set p.commentCount = p.commentCount + :delta, p.revision = p.revision + 1 where p.id = :postId")
+    int adjustCommentCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    // Takes a user's comments out of the counters of the other authors' posts they were left on, in one
+    // statement; run before deleting the user, whose comments then go through the cascade
+    @Modifying
+    @Query("update Post p set p.commentCount = p.commentCount - " +
+            "(select count(c) from Comment c where c.post = p and c.user.id = :userId), p.revision = p.revision + 1 " +
+            "where p.user.id <> :userId and p.id in (select c.post.id from Comment c where c.user.id = :userId)")
+    int removeCommentsOfUser(@Param("userId") Long userId);
+
+    // Marks every post showing the user, as author or commenter, as changed after their profile was edited
+    @Modifying
+    @Query("update Post p set p.revision = p.revision + 1 " +
+            "where p.user.id = :userId or p.id in (select c.post.id from Comment c where c.user.id = :userId)")
+    int incrementRevisionOfPostsShowingUser(@Param("userId") Long userId);
+
+    // Marks the post as changed after one of its comments was edited
+    @Modifying
+    @Query("update Post p set p.revision = p.revision + 1 where p.id = :postId")
+    int incrementRevision(@Param("postId") Long postId);
+
+    // Version lookups for conditional GETs; these never load entities
+    Optional<PostVersionView> findVersionById(Long id);
+
+    List<PostVersionView> findVersionsByIdLessThanOrderByIdDesc(Long id, Limit limit);
+
+    List<PostVersionView> findVersionsByStatusAndIdLessThanOrderByIdDesc(Status status, Long id, Limit limit);
+
+    // Recomputes every counter from the comment table; only used for one-off backfills
+    @Modifying
+    @Query("update Post p set p.commentCount = (select count(c) from Comment c where c.post = p)")
+    int recomputeCommentCounts();
 }
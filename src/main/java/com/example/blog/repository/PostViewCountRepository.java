@@ -0,0 +1,9 @@
+package com.example.blog.repository;
+
+import com.example.blog.entities.PostViewCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PostViewCountRepository extends JpaRepository<PostViewCount, Long> {
+}
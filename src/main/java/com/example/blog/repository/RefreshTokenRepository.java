@@ -0,0 +1,36 @@
+package com.example.blog.repository;
+
+import com.example.blog.entities.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Succeeds for exactly one of several concurrent refreshes with the same token
+    @Modifying
+    @Query("update RefreshToken r set r.usedAt = :now where r.id = :id and r.usedAt is null and r.revokedAt is null")
+    int markUsed(@Param("id") Long id, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update RefreshToken r set r.revokedAt = :now where r.sessionId = :sessionId and r.revokedAt is null")
+    int revokeSession(@Param("sessionId") String sessionId, @Param("now") Instant now);
+
+    @Query("select distinct r.sessionId from RefreshToken r where r.revokedAt > :since")
+    List<String> findSessionsRevokedSince(@Param("since") Instant since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") Instant before);
+}
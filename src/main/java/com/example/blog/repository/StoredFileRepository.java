@@ -0,0 +1,32 @@
+package com.example.blog.repository;
+
+import com.example.blog.entities.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    Optional<StoredFile> findByUrl(String url);
+
+    // First upload of this content inserts the row; later ones, racing or not, leave it as it is
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO stored_file (hash, url, size, created_at) VALUES (:hash, :url, :size, :now)",
+            nativeQuery = true)
+    int register(@Param("hash") String hash, @Param("url") String url, @Param("size") long size,
+                 @Param("now") Instant now);
+
+    // Used by the orphan sweep once no post references the upload any more
+    @Transactional
+    @Modifying
+    @Query("delete from StoredFile f where f.url = :url")
+    int deleteByUrl(@Param("url") String url);
+}
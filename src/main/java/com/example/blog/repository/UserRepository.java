@@ -2,11 +2,27 @@ package com.example.blog.repository;
 
 import com.example.blog.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
+
+    @Query("select u.tokenVersion from User u where u.id = :userId")
+    Optional<Long> findTokenVersionById(@Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = :userId")
+    int updatePassword(@Param("userId") Long userId, @Param("password") String password);
+
+    @Modifying
+    @Query("update User u set u.tokenVersion = u.tokenVersion + 1 where u.id = :userId")
+    int incrementTokenVersion(@Param("userId") Long userId);
 }
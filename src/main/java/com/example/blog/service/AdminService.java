@@ -6,7 +6,6 @@ import com.example.blog.entities.Role;
 import com.example.blog.entities.User;
 import com.example.blog.repository.UserRepository;
 import exception.GlobalExceptionHandler;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -16,17 +15,22 @@ import java.util.stream.Collectors;
 public class AdminService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
+    private final UserIdentityCache identities;
+    private final UserService userService;
 
-    public AdminService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AdminService(UserRepository userRepository, PasswordHashingService passwordHashing,
+                        UserIdentityCache identities, UserService userService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
+        this.identities = identities;
+        this.userService = userService;
     }
 
     // Method to check if email already exists
     public boolean checkEmailExists(String email) {
 
-        return userRepository.findByEmail(email).isPresent();
+        return identities.exists(email);
     }
 
     public UserDto registerAdmin(RegisterRequestDto request) {
@@ -38,18 +42,16 @@ public class AdminService {
         User admin = new User();
         admin.setName(request.getName());
         admin.setEmail(request.getEmail());
-        admin.setPassword(passwordEncoder.encode(request.getPassword()));
+        admin.setPassword(passwordHashing.encode(request.getPassword()));
         admin.setRole(Role.ADMIN);
 
         User savedAdmin = userRepository.save(admin);
         return new UserDto(savedAdmin.getId(), savedAdmin.getName(), savedAdmin.getEmail(), savedAdmin.getRole());
     }
 
+    // Same cleanup as a user deleting their own account
     public void deleteUserById(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
-        userRepository.delete(user);
+        userService.deleteUserAccount(id);
     }
 
     public List<UserDto> getAllUsers() {
@@ -59,12 +61,6 @@ public class AdminService {
                 .collect(Collectors.toList());
     }
 
-    public boolean isAdmin(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
-        return user.getRole().equals(Role.ADMIN);
-    }
 
 
 }
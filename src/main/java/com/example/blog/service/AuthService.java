@@ -1,16 +1,16 @@
 package com.example.blog.service;
 
 import com.example.blog.dto.user.RegisterRequestDto;
+import com.example.blog.dto.user.TokenResponseDto;
 import com.example.blog.dto.user.UserDto;
+import com.example.blog.dto.user.UserIdentity;
 import com.example.blog.entities.User;
 import com.example.blog.repository.UserRepository;
-import com.example.blog.util.JwtUtil;
 import exception.GlobalExceptionHandler;
 import jakarta.validation.Valid;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
@@ -19,20 +19,26 @@ import org.springframework.validation.annotation.Validated;
 public class AuthService implements UserDetailsService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final JwtUtil jwtUtil;
+    private final UserIdentityCache identities;
+    private final PasswordHashingService passwordHashing;
+    private final TokenRevocationService tokenRevocation;
+    private final RefreshTokenService refreshTokens;
 
     // Constructor injection
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+    public AuthService(UserRepository userRepository, UserIdentityCache identities,
+                       PasswordHashingService passwordHashing, TokenRevocationService tokenRevocation,
+                       RefreshTokenService refreshTokens) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
-        this.jwtUtil = jwtUtil;
+        this.identities = identities;
+        this.passwordHashing = passwordHashing;
+        this.tokenRevocation = tokenRevocation;
+        this.refreshTokens = refreshTokens;
     }
 
     // Method to check if email already exists
     public boolean checkEmailExists(String email) {
 
-        return userRepository.findByEmail(email).isPresent();
+        return identities.exists(email);
     }
 
     public UserDto registerUser(@Valid RegisterRequestDto request) {
@@ -42,7 +48,7 @@ public class AuthService implements UserDetailsService {
 
         User user = new User();
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashing.encode(request.getPassword()));
         user.setName(request.getName());
         user.setRole(request.getRole());
         userRepository.save(user);
@@ -50,28 +56,43 @@ public class AuthService implements UserDetailsService {
     }
 
 
-    public String loginUser(String email, String password) {
-        User user = userRepository.findByEmail(email)
+    public TokenResponseDto loginUser(String email, String password) {
+        UserIdentity user = identities.findByEmail(email)
                 .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
 
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        if (!passwordHashing.matches(password, user.passwordHash())) {
             throw new GlobalExceptionHandler.InvalidCredentialsException("Invalid credentials");
         }
+        rehashIfOutdated(user, password);
 
-        return jwtUtil.generateToken(user.getName(), user.getEmail(), user.getRole()); // Generate JWT token for the user
+        // Start a session: an access token plus the refresh token that renews it
+        return refreshTokens.startSession(user, tokenRevocation.currentVersion(user.id()));
+    }
+
+    // Best effort: the login has already succeeded, so a busy hashing pool just defers the upgrade
+    private void rehashIfOutdated(UserIdentity user, String password) {
+        if (!passwordHashing.needsRehash(user.passwordHash())) {
+            return;
+        }
+        try {
+            userRepository.updatePassword(user.id(), passwordHashing.encode(password));
+            identities.evict(user.email());
+        } catch (GlobalExceptionHandler.ServiceOverloadedException e) {
+            // Try again on the next login
+        }
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        // Load user from database by email
-        User user = userRepository.findByEmail(email)
+        // Load user from the identity cache by email
+        UserIdentity user = identities.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
-        // Convert your User entity to UserDetails
+        // Convert the cached identity to UserDetails
         return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getEmail())
-                .password(user.getPassword())
-                .roles(user.getRole().name()) // Assuming Role is an enum
+                .username(user.email())
+                .password(user.passwordHash())
+                .roles(user.role().name()) // Assuming Role is an enum
                 .build();
     }
 }
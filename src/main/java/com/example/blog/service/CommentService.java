@@ -1,14 +1,16 @@
 package com.example.blog.service;
 
 import com.example.blog.dto.comment.CommentRequestDto;
+import com.example.blog.dto.post.PostVersionView;
 import com.example.blog.entities.Comment;
 import com.example.blog.entities.Post;
-import com.example.blog.entities.User;
 import com.example.blog.repository.CommentRepository;
 import com.example.blog.repository.PostRepository;
 import com.example.blog.repository.UserRepository;
+import com.example.blog.util.ETags;
 import exception.GlobalExceptionHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,58 +21,74 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
     private final UserRepository userRepository;
+    private final PostCacheService postCache;
 
-    public CommentService(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository) {
+    public CommentService(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository,
+                          PostCacheService postCache) {
         this.commentRepository = commentRepository;
         this.postRepository = postRepository;
         this.userRepository = userRepository;
+        this.postCache = postCache;
     }
 
-    // Create a new comment
-    public Comment createComment(CommentRequestDto commentRequestDto, String email, Long postId) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new GlobalExceptionHandler.PostNotFoundException("Post not found"));
+    // Create a new comment and bump the post's comment count in the same transaction
+    @Transactional
+    public Comment createComment(CommentRequestDto commentRequestDto, Long userId, Long postId) {
+        // The counter update doubles as the existence check, so the post itself is never loaded
+        if (postRepository.adjustCommentCount(postId, 1) == 0) {
+            throw new GlobalExceptionHandler.PostNotFoundException("Post not found");
+        }
+        Post post = postRepository.getReferenceById(postId);
 
         Comment comment = new Comment();
         comment.setBody(commentRequestDto.getBody());
-        comment.setUser(user);
+        comment.setUser(userRepository.getReferenceById(userId));
         comment.setPost(post);
         comment.setCreatedAt(LocalDateTime.now());
 
-        return commentRepository.save(comment);
+        Comment savedComment = commentRepository.save(comment);
+        postCache.evictPost(postId);
+        return savedComment;
     }
 
     // Edit an existing comment
-    public Comment editComment(Long commentId, CommentRequestDto commentRequestDto, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
-        Comment comment = commentRepository.findByIdAndUserId(commentId, user.getId())
+    @Transactional
+    public Comment editComment(Long commentId, CommentRequestDto commentRequestDto, Long userId) {
+        Comment comment = commentRepository.findByIdAndUserId(commentId, userId)
                 .orElseThrow(() -> new GlobalExceptionHandler.CommentNotFoundException("Comment not found"));
 
         comment.setBody(commentRequestDto.getBody());
-        return commentRepository.save(comment);
+        Comment savedComment = commentRepository.save(comment);
+        postRepository.incrementRevision(comment.getPost().getId());
+        postCache.evictPost(comment.getPost().getId());
+        return savedComment;
     }
 
-    // Delete a comment
-    public void deleteComment(Long commentId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
-        Comment comment = commentRepository.findByIdAndUserId(commentId, user.getId())
+    // Delete a comment and decrement the post's comment count in the same transaction
+    @Transactional
+    public void deleteComment(Long commentId, Long userId) {
+        Comment comment = commentRepository.findByIdAndUserId(commentId, userId)
                 .orElseThrow(() -> new GlobalExceptionHandler.CommentNotFoundException("Comment not found"));
 
         commentRepository.delete(comment);
+        postRepository.adjustCommentCount(comment.getPost().getId(), -1);
+        postCache.evictPost(comment.getPost().getId());
     }
 
-    // Retrieve all comments for a specific post
-    public List<Comment> getCommentsByPostId(Long postId) {
-        Post post = postRepository.findById(postId)
+    // ETag of a post's comment list; every comment write bumps the post revision
+    public String getCommentsETag(Long postId) {
+        PostVersionView version = postRepository.findVersionById(postId)
                 .orElseThrow(() -> new GlobalExceptionHandler.PostNotFoundException("Post not found"));
+        return ETags.of("comments", postId, version.getVersion(), version.getRevision());
+    }
+
+    // Retrieve all comments for a specific post, with their authors
+    @Transactional(readOnly = true)
+    public List<Comment> getCommentsByPostId(Long postId) {
+        if (!postRepository.existsById(postId)) {
+            throw new GlobalExceptionHandler.PostNotFoundException("Post not found");
+        }
 
-        return commentRepository.findByPostId(postId);
+        return commentRepository.findByPostIdOrderByCreatedAtAscIdAsc(postId);
     }
 }
@@ -0,0 +1,149 @@
+package com.example.blog.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * One file per upload under uploads/, at the path its URL names (uploads/ab/cd/<sha256>.<ext>, or
+ * uploads/UUID_name for uploads from before content addressing). Also holds the uploads that
+ * SegmentUploadStorage does not pack.
+ */
+@Service
+@ConditionalOnProperty(name = "blog.uploads.storage", havingValue = "file", matchIfMissing = true)
+public class FileUploadStorage implements UploadStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileUploadStorage.class);
+
+    static final String URL_PREFIX = "/uploads/";
+    static final String INCOMING = "tmp";
+    static final String SEGMENTS = "segments";
+
+    // Directories under uploads/ that hold no uploads of their own and are never served
+    private static final Set<String> RESERVED = Set.of(INCOMING, SEGMENTS);
+
+    private final Path root;
+
+    public FileUploadStorage() {
+        this(Paths.get(System.getProperty("user.dir"), "uploads"));
+    }
+
+    FileUploadStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public Path incomingDir() {
+        return root.resolve(INCOMING);
+    }
+
+    @Override
+    public void put(String url, Path file) throws IOException {
+        Path target = resolve(url);
+        if (target == null) {
+            throw new IllegalArgumentException("Not an upload URL: " + url);
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            // Never expose a half-written file to UploadController
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Stored upload {}", target);
+        } catch (FileAlreadyExistsException e) {
+            // A concurrent upload of the same content got there first
+        }
+    }
+
+    @Override
+    public Upload find(String url) throws IOException {
+        Path file = resolve(url);
+        if (file == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? new Upload(attributes.size(), attributes.lastModifiedTime().toMillis(), file, null)
+                    : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void touch(String url) throws IOException {
+        Path file = resolve(url);
+        if (file != null) {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        }
+    }
+
+    @Override
+    public boolean delete(String url) throws IOException {
+        Path file = resolve(url);
+        return file != null && Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                return isReserved(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (!attributes.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String url = URL_PREFIX + root.relativize(file).toString().replace('\\', '/');
+                return visitor.visit(url, attributes.size(), attributes.lastModifiedTime().toMillis())
+                        ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+            }
+
+            // A file or directory removed while the walk was under way is not an error
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+    }
+
+    // The file behind an upload URL, or null if the URL does not name an upload
+    private Path resolve(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        Path file = root.resolve(url.substring(URL_PREFIX.length())).normalize();
+        return file.startsWith(root) && !file.equals(root) && !isReserved(file) ? file : null;
+    }
+
+    private boolean isReserved(Path path) {
+        if (path.equals(root)) {
+            return false;
+        }
+        Path first = root.relativize(path).getName(0);
+        return RESERVED.contains(first.toString());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.blog.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the contents of the most requested uploads in direct buffers, so UploadController can answer
+ * them without touching the disk and without the bytes ever living on the Java heap.
+ *
+ * A file is only loaded once it has been asked for admit-after times within the tracking window, so a
+ * crawl through old posts does not push out the front page. The cache itself is bounded by total bytes,
+ * and Caffeine's frequency-based eviction decides which entry goes when a new one needs room. Evicted
+ * buffers are released by the garbage collector like any direct buffer; their size is small next to
+ * -XX:MaxDirectMemorySize as long as max-size is.
+ */
+@Service
+public class HotImageCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotImageCache.class);
+
+    // content is read-only and shared; callers work on a duplicate
+    public record Entry(ByteBuffer content, long lastModified) {
+        public long length() {
+            return content.capacity();
+        }
+    }
+
+    private final boolean enabled;
+    private final long maxEntrySize;
+    private final int admitAfter;
+    private final Cache<String, Entry> entries;
+    private final Cache<String, AtomicInteger> requestCounts;
+
+    public HotImageCache(@Value("${blog.uploads.cache.enabled:true}") boolean enabled,
+                         @Value("${blog.uploads.cache.max-size:64MB}") DataSize maxSize,
+                         @Value("${blog.uploads.cache.max-entry-size:1MB}") DataSize maxEntrySize,
+                         @Value("${blog.uploads.cache.admit-after:3}") int admitAfter,
+                         @Value("${blog.uploads.cache.tracking-window:PT10M}") Duration trackingWindow) {
+        this.enabled = enabled;
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE);
+        this.admitAfter = Math.max(1, admitAfter);
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String url, Entry entry) -> entry.content().capacity())
+                .recordStats()
+                .build();
+        this.requestCounts = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(trackingWindow)
+                .build();
+    }
+
+    // The cached upload, or null; every miss counts towards the upload being admitted
+    public Entry get(String url) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.getIfPresent(url);
+        if (entry == null) {
+            requestCounts.get(url, u -> new AtomicInteger()).incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Loads a file-backed upload if it has been requested often enough and is small enough, and
+     * returns it, or null if it is not admitted (yet) or could not be read. Uploads the storage already
+     * holds in memory are never copied.
+     */
+    public Entry admit(String url, UploadStorage.Upload upload) {
+        if (!enabled || upload.file() == null || upload.length() > maxEntrySize) {
+            return null;
+        }
+        AtomicInteger count = requestCounts.getIfPresent(url);
+        if (count == null || count.get() < admitAfter) {
+            return null;
+        }
+        try {
+            Entry entry = entries.get(url, u -> load(upload));
+            requestCounts.invalidate(url);
+            return entry;
+        } catch (UncheckedIOException e) {
+            logger.warn("Could not cache {}", url, e.getCause());
+            return null;
+        }
+    }
+
+    // For uploads that are deleted
+    public void evict(String url) {
+        entries.invalidate(url);
+    }
+
+    private static Entry load(UploadStorage.Upload upload) {
+        try (FileChannel channel = FileChannel.open(upload.file(), StandardOpenOption.READ)) {
+            ByteBuffer content = ByteBuffer.allocateDirect((int) upload.length());
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            if (content.hasRemaining()) {
+                throw new IOException("File shrank while it was read");
+            }
+            content.flip();
+            return new Entry(content.asReadOnlyBuffer(), upload.lastModified());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "hotImages");
+        Gauge.builder("blog.uploads.cache.resident", entries,
+                        cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .baseUnit("bytes")
+                .description("Upload bytes held in the off-heap cache")
+                .register(registry);
+        Gauge.builder("blog.uploads.cache.hit.ratio", entries, cache -> cache.stats().hitRate())
+                .description("Share of upload requests answered from the off-heap cache")
+                .register(registry);
+    }
+}
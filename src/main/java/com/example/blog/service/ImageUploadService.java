@@ -1,48 +1,215 @@
 package com.example.blog.service;
 
+import com.example.blog.entities.StoredFile;
+import com.example.blog.repository.StoredFileRepository;
+import exception.GlobalExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.locks.Lock;
 
+/**
+ * Content-addressed uploads. An upload is hashed while it streams to a temporary file and then
+ * stored under /uploads/ab/cd/<sha256>.<ext>, so identical images are kept once. The extension comes
+ * from the image type found in the bytes. stored_file maps each content hash to its URL; uploads no
+ * post points at any more are removed by UploadGarbageCollector, which is what decides when a file
+ * goes. Where the bytes live is up to the configured UploadStorage.
+ *
+ * Uploads from before this layout (/uploads/UUID_name) stay where they are and are still served by
+ * UploadController.
+ */
 @Service
 public class ImageUploadService {
 
-    private final String UPLOAD_DIR = System.getProperty("user.dir") + "/uploads/";
+    private static final String URL_PREFIX = "/uploads/";
+    private static final int SNIFF_LENGTH = 12;
 
-    public String uploadImage(MultipartFile file) throws IOException {
-        System.out.println("Upload directory: " + UPLOAD_DIR);
+    private final UploadStorage storage;
+    private final StoredFileRepository storedFiles;
+    private final UploadLocks locks;
+    private final long maxSize;
 
-        if (file.isEmpty()) {
-            throw new IllegalArgumentException("Image file is empty");
+    public ImageUploadService(UploadStorage storage, StoredFileRepository storedFiles, UploadLocks locks,
+                              @Value("${blog.uploads.max-size:10MB}") DataSize maxSize) {
+        this.storage = storage;
+        this.storedFiles = storedFiles;
+        this.locks = locks;
+        this.maxSize = maxSize.toBytes();
+    }
+
+    /**
+     * Streams one image to storage (or finds the identical file already stored and marks it as just
+     * used) and returns its URL. The bytes are checked to be a supported image type before anything
+     * is written, and the copy is abandoned as soon as it passes the size limit.
+     *
+     * @throws GlobalExceptionHandler.UnsupportedUploadTypeException if the content is not a supported image
+     * @throws GlobalExceptionHandler.UploadTooLargeException if the content is larger than blog.uploads.max-size
+     */
+    public String store(InputStream content) throws IOException {
+        InputStream in = new BufferedInputStream(content);
+        in.mark(SNIFF_LENGTH);
+        byte[] head = in.readNBytes(SNIFF_LENGTH);
+        in.reset();
+        if (head.length == 0) {
+            throw new GlobalExceptionHandler.InvalidUploadException("Image file is empty");
+        }
+        String extension = ImageType.extensionOf(head);
+        if (extension == null) {
+            throw new GlobalExceptionHandler.UnsupportedUploadTypeException("Only JPEG, PNG, GIF and WebP images are accepted");
         }
 
-        // Ensure the directory exists
-        File directory = new File(UPLOAD_DIR);
-        if (!directory.exists()) {
-            System.out.println("Directory does not exist, creating: " + UPLOAD_DIR);
-            directory.mkdirs();
+        Path incoming = storage.incomingDir();
+        Files.createDirectories(incoming);
+        Path temporary = Files.createTempFile(incoming, "upload", ".tmp");
+        try {
+            // Written once, to the same file system as the store, so storing it is usually a rename
+            MessageDigest sha256 = sha256();
+            long size;
+            try (InputStream limited = new DigestInputStream(new SizeLimitedInputStream(in, maxSize), sha256)) {
+                size = Files.copy(limited, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(sha256.digest());
+
+            // Same bytes, same URL
+            String url = storedFiles.findById(hash).map(StoredFile::getUrl)
+                    .orElseGet(() -> URL_PREFIX + shardedName(hash, extension));
+            if (!touchIfPresent(url)) {
+                storage.put(url, temporary);
+            }
+            storedFiles.register(hash, url, size, Instant.now());
+            return url;
+        } finally {
+            Files.deleteIfExists(temporary);
         }
+    }
 
-        // Generate a unique file name
-        String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-        Path filePath = Paths.get(UPLOAD_DIR, fileName);
+    // The stored upload behind a URL, or null
+    public UploadStorage.Upload find(String url) throws IOException {
+        return storage.find(url);
+    }
 
+    // Marks the upload as just used if it exists, which keeps the orphan sweep off it until the post is
+    // saved. Checked and touched under the URL's lock, so the sweep cannot delete it in between
+    public boolean touchIfPresent(String url) throws IOException {
+        Lock lock = locks.forUrl(url);
+        lock.lock();
         try {
-            // Save the file locally
-            Files.copy(file.getInputStream(), filePath);
-            System.out.println("File successfully saved: " + filePath.toString());
-        } catch (IOException e) {
-            System.err.println("Error while saving file: " + e.getMessage());
-            throw e; // Re-throw the exception after logging
+            if (storage.find(url) == null) {
+                return false;
+            }
+            storage.touch(url);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stores a file the application made itself, such as an image variant, under url
+    public void storeGenerated(String url, Path file) throws IOException {
+        storage.put(url, file);
+    }
+
+    // A temporary file to write content into before storeGenerated
+    public Path createTemporaryFile(String prefix) throws IOException {
+        Files.createDirectories(storage.incomingDir());
+        return Files.createTempFile(storage.incomingDir(), prefix, ".tmp");
+    }
+
+    private static String shardedName(String hash, String extension) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extension;
+    }
+
+    // Recognised by magic number; the client's file name and content type are not trusted
+    private enum ImageType {
+        JPEG("jpg"), PNG("png"), GIF("gif"), WEBP("webp");
+
+        private final String extension;
+
+        ImageType(String extension) {
+            this.extension = extension;
         }
 
-        // Return the file URL for access
-        return "/uploads/" + fileName;
+        static String extensionOf(byte[] head) {
+            ImageType type = null;
+            if (startsWith(head, 0, 0xFF, 0xD8, 0xFF)) {
+                type = JPEG;
+            } else if (startsWith(head, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+                type = PNG;
+            } else if (startsWith(head, 0, 'G', 'I', 'F', '8')) {
+                type = GIF;
+            } else if (startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'E', 'B', 'P')) {
+                type = WEBP;
+            }
+            return type == null ? null : type.extension;
+        }
+
+        private static boolean startsWith(byte[] head, int offset, int... expected) {
+            if (head.length < offset + expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if ((head[offset + i] & 0xFF) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Fails the copy the moment one byte more than the limit has been read
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(long read) {
+            count += read;
+            if (count > limit) {
+                throw new GlobalExceptionHandler.UploadTooLargeException("Image is larger than " + limit + " bytes");
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
@@ -0,0 +1,253 @@
+package com.example.blog.service;
+
+import com.example.blog.repository.PostRepository;
+import com.example.blog.util.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes the downscaled JPEG copies of an uploaded post image (thumbnail and medium) in the background,
+ * with plain ImageIO, and records their URLs on the post.
+ *
+ * Uploads return as soon as the original is stored; until the variants exist, list views fall back to
+ * the original. Images are decoded with source subsampling, so no more than about twice the medium size
+ * is ever held in memory, and images whose header claims more than max-pixels are not decoded at all.
+ * Work runs on a small bounded pool. When it is full the job is dropped with a warning,
+ * the post keeps serving its original, and the variants backfill migration can pick it up later.
+ */
+@Service
+public class ImageVariantService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final int THUMBNAIL_SIZE = 200;
+    private static final int MEDIUM_SIZE = 800;
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final ImageUploadService imageUploadService;
+    private final PostRepository postRepository;
+    private final PostCacheService postCache;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+
+    private Timer duration;
+    private Counter rejected;
+    private Counter failed;
+
+    public ImageVariantService(ImageUploadService imageUploadService, PostRepository postRepository,
+                               PostCacheService postCache,
+                               @Value("${blog.images.threads:2}") int threads,
+                               @Value("${blog.images.queue-capacity:100}") int queueCapacity,
+                               @Value("${blog.images.max-pixels:40000000}") long maxPixels) {
+        this.imageUploadService = imageUploadService;
+        this.postRepository = postRepository;
+        this.postCache = postCache;
+        this.maxPixels = maxPixels;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Queues the variants once the post referencing imageUrl has been committed
+    public void scheduleVariants(Long postId, String imageUrl) {
+        if (imageUrl == null) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            try {
+                executor.execute(() -> generate(postId, imageUrl));
+            } catch (RejectedExecutionException e) {
+                if (rejected != null) {
+                    rejected.increment();
+                }
+                logger.warn("Image variant queue is full, post {} keeps its original image", postId);
+            }
+        });
+    }
+
+    // Runs on the caller's thread; used directly by the backfill migration
+    public void generate(Long postId, String imageUrl) {
+        long started = System.nanoTime();
+        try {
+            UploadStorage.Upload original = imageUploadService.find(imageUrl);
+            BufferedImage image = original == null ? null : decode(postId, original);
+            if (image == null) {
+                // Not a file ImageIO can decode, or too large to; record the original so the backfill
+                // does not retry it
+                if (postRepository.setImageVariants(postId, imageUrl, imageUrl, imageUrl) > 0) {
+                    postCache.evictPost(postId);
+                }
+                return;
+            }
+            String thumbnailUrl = variant(image, imageUrl, "thumb", THUMBNAIL_SIZE);
+            String mediumUrl = variant(image, imageUrl, "medium", MEDIUM_SIZE);
+            if (postRepository.setImageVariants(postId, imageUrl, thumbnailUrl, mediumUrl) > 0) {
+                postCache.evictPost(postId);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (failed != null) {
+                failed.increment();
+            }
+            logger.error("Could not create image variants for post {}", postId, e);
+        } finally {
+            if (duration != null) {
+                duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // Reads the header first and decodes every n-th pixel so the result is at most twice MEDIUM_SIZE
+    // on its longer side; null if no reader knows the format or it has more than maxPixels
+    private BufferedImage decode(Long postId, UploadStorage.Upload original) throws IOException {
+        try (InputStream in = original.openStream();
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    logger.warn("Image of post {} is {}x{}, over the {} pixel limit; keeping the original only",
+                            postId, width, height, maxPixels);
+                    return null;
+                }
+                int step = Math.max(1, (Math.max(width, height) + 2 * MEDIUM_SIZE - 1) / (2 * MEDIUM_SIZE));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Images already within the bound are served as they are rather than recompressed larger
+    private String variant(BufferedImage image, String imageUrl, String suffix, int maxSize) throws IOException {
+        if (image.getWidth() <= maxSize && image.getHeight() <= maxSize) {
+            return imageUrl;
+        }
+        // Uploads are content-addressed, so an existing variant was made from these very bytes
+        String variantUrl = baseName(imageUrl) + "_" + suffix + ".jpg";
+        if (imageUploadService.touchIfPresent(variantUrl)) {
+            return variantUrl;
+        }
+        Path temporary = imageUploadService.createTemporaryFile("variant");
+        try {
+            writeJpeg(scale(image, maxSize), temporary);
+            imageUploadService.storeGenerated(variantUrl, temporary);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return variantUrl;
+    }
+
+    private static String baseName(String url) {
+        int dot = url.lastIndexOf('.');
+        return dot > url.lastIndexOf('/') ? url.substring(0, dot) : url;
+    }
+
+    // Halves the image until close to the target and then scales once more; a single large bilinear
+    // step would skip most source pixels and alias badly
+    private static BufferedImage scale(BufferedImage image, int maxSize) {
+        double ratio = Math.min((double) maxSize / image.getWidth(), (double) maxSize / image.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    // Always RGB on white: JPEG has no alpha channel
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("blog.images.variants.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Images waiting for their variants")
+                .register(registry);
+        duration = Timer.builder("blog.images.variants.duration")
+                .description("Time spent creating the variants of one image")
+                .register(registry);
+        rejected = Counter.builder("blog.images.variants.rejected")
+                .description("Variant jobs dropped because the queue was full")
+                .register(registry);
+        failed = Counter.builder("blog.images.variants.failed")
+                .description("Variant jobs that failed")
+                .register(registry);
+    }
+}
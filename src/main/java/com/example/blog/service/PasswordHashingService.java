@@ -0,0 +1,129 @@
+package com.example.blog.service;
+
+import exception.GlobalExceptionHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt on a small pool sized to the CPU instead of on servlet threads.
+ *
+ * Hashing is deliberately slow, so a login burst on request threads would keep every core busy and
+ * starve cheap endpoints. Here at most one hash per core runs at a time, a bounded queue absorbs short
+ * bursts, and anything beyond that is refused at once with ServiceOverloadedException (503) rather
+ * than queued behind work that would time out anyway.
+ */
+@Service
+public class PasswordHashingService implements MeterBinder {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejected;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Value("${blog.hashing.threads:0}") int threads,
+                                  @Value("${blog.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${blog.hashing.timeout:PT5S}") Duration timeout) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), hashingThreads(), new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    private static ThreadFactory hashingThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword), encodeTimer);
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    // Cheap: only inspects the stored hash, e.g. for a cost factor below the configured one
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> hash, Timer timer) {
+        Callable<T> task = timer == null ? hash : () -> timer.recordCallable(hash);
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            if (rejected != null) {
+                rejected.increment();
+            }
+            throw new GlobalExceptionHandler.ServiceOverloadedException("Password hashing is overloaded");
+        }
+
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new GlobalExceptionHandler.ServiceOverloadedException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new GlobalExceptionHandler.ServiceOverloadedException("Interrupted while hashing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("blog.hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Password hashes waiting for a hashing thread")
+                .register(registry);
+        Gauge.builder("blog.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes running")
+                .register(registry);
+        encodeTimer = Timer.builder("blog.hashing.duration").tag("operation", "encode")
+                .description("Time spent computing a password hash").register(registry);
+        matchesTimer = Timer.builder("blog.hashing.duration").tag("operation", "matches")
+                .description("Time spent computing a password hash").register(registry);
+        rejected = Counter.builder("blog.hashing.rejected")
+                .description("Hash requests refused because the queue was full")
+                .register(registry);
+    }
+}
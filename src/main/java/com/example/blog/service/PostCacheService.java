@@ -0,0 +1,118 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.post.PostResponseDto;
+import com.example.blog.entities.Status;
+import com.example.blog.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for post listing pages and single-post DTOs.
+ *
+ * Every cached page remembers the id range it was selected from, [lowerBound, upperBound).
+ * A change to post X only evicts pages whose range contains X plus X's own entry. Keyset pages
+ * deeper in the feed stay cached when a new post is created, because new posts only ever land
+ * on the first page.
+ */
+@Service
+public class PostCacheService implements MeterBinder {
+
+    private final Cache<PageKey, CachedPage> pages;
+    private final Cache<Long, PostResponseDto> posts;
+
+    // Bumped after every committed post change; a load that overlapped an eviction is not cached, and the
+    // full listing's ETag is derived from it. Starts from the clock, so a restarted process never hands
+    // out a generation an earlier one already used.
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis() << 20);
+
+    public PostCacheService(@Value("${blog.cache.posts.max-pages:1000}") long maxPages,
+                            @Value("${blog.cache.posts.max-posts:10000}") long maxPosts,
+                            @Value("${blog.cache.posts.ttl:PT5M}") Duration ttl) {
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(maxPages)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.posts = Caffeine.newBuilder()
+                .maximumSize(maxPosts)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    // listing is "feed" or "all"; before is the exclusive upper id bound of a keyset page
+    public record PageKey(String listing, Status status, long before, int size, Integer commentLimit) {
+    }
+
+    private record CachedPage(Object value, long lowerBound, long upperBound) {
+        boolean covers(long postId) {
+            return postId >= lowerBound && postId < upperBound;
+        }
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getPage(PageKey key) {
+        CachedPage page = pages.getIfPresent(key);
+        return page == null ? null : (T) page.value();
+    }
+
+    // generation must be read before the page was loaded from the database
+    public void putPage(PageKey key, Object value, long lowerBound, long upperBound, long loadedAtGeneration) {
+        if (generation.get() == loadedAtGeneration) {
+            pages.put(key, new CachedPage(value, lowerBound, upperBound));
+            // An eviction may have slipped in between the check and the put
+            if (generation.get() != loadedAtGeneration) {
+                pages.invalidate(key);
+            }
+        }
+    }
+
+    public PostResponseDto getPost(Long postId) {
+        return posts.getIfPresent(postId);
+    }
+
+    public void putPost(Long postId, PostResponseDto post, long loadedAtGeneration) {
+        if (generation.get() == loadedAtGeneration) {
+            posts.put(postId, post);
+            if (generation.get() != loadedAtGeneration) {
+                posts.invalidate(postId);
+            }
+        }
+    }
+
+    // Evicts the post and every cached page whose id range contains it, once the current transaction commits
+    public void evictPost(Long postId) {
+        AfterCommit.run(() -> {
+            generation.incrementAndGet();
+            posts.invalidate(postId);
+            pages.asMap().entrySet().removeIf(entry -> entry.getValue().covers(postId));
+        });
+    }
+
+    // For changes that touch posts without going through them, like deleting or renaming their author
+    public void evictAll() {
+        AfterCommit.run(() -> {
+            generation.incrementAndGet();
+            posts.invalidateAll();
+            pages.invalidateAll();
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, pages, "posts.pages");
+        CaffeineCacheMetrics.monitor(registry, posts, "posts.entries");
+    }
+}
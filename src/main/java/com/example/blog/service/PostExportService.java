@@ -0,0 +1,133 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.post.PostExportView;
+import com.example.blog.entities.Status;
+import com.example.blog.repository.PostRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Writes the posts a user may read, published ones and their own drafts, to an output stream as they
+ * are read from the database. Rows are projections, not managed entities, so memory stays flat however
+ * many posts there are.
+ */
+@Service
+public class PostExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,title,body,status,imageUrl,commentCount,userId,userName\n";
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final PostRepository postRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter jsonWriter;
+
+    public PostExportService(PostRepository postRepository, PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper) {
+        this.postRepository = postRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.jsonWriter = objectMapper.writer();
+    }
+
+    public void export(Long userId, Format format, OutputStream target) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(target, BUFFER_SIZE);
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try {
+            readOnlyTransaction.executeWithoutResult(tx -> {
+                try (Stream<PostExportView> posts = postRepository.streamForExport(Status.PUBLISHED, userId)) {
+                    Iterator<PostExportView> iterator = posts.iterator();
+                    boolean first = true;
+                    while (iterator.hasNext()) {
+                        writeRow(format, iterator.next(), out);
+                        if (first) {
+                            out.flush();  // Get the first byte to the client without waiting for a full buffer
+                            first = false;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();  // Usually the client went away
+        }
+        out.flush();
+    }
+
+    private void writeRow(Format format, PostExportView post, OutputStream out) throws IOException {
+        if (format == Format.NDJSON) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", post.getId());
+            row.put("title", post.getTitle());
+            row.put("body", post.getBody());
+            row.put("status", post.getStatus());
+            row.put("imageUrl", post.getImageUrl());
+            row.put("commentCount", post.getCommentCount());
+            row.put("userId", post.getUserId());
+            row.put("userName", post.getUserName());
+            out.write(jsonWriter.writeValueAsBytes(row));
+            out.write('\n');
+        } else {
+            StringBuilder line = new StringBuilder(256);
+            line.append(post.getId()).append(',');
+            appendCsv(line, post.getTitle()).append(',');
+            appendCsv(line, post.getBody()).append(',');
+            appendCsv(line, post.getStatus() == null ? null : post.getStatus().name()).append(',');
+            appendCsv(line, post.getImageUrl()).append(',');
+            line.append(post.getCommentCount()).append(',');
+            line.append(post.getUserId()).append(',');
+            appendCsv(line, post.getUserName()).append('\n');
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // RFC 4180 quoting: wrap in quotes when needed and double any embedded quotes
+    private static StringBuilder appendCsv(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            return line.append(value);
+        }
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.blog.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over post titles and bodies, ranked with BM25.
+ *
+ * Postings are kept as parallel primitive arrays sorted by post id, and scores are accumulated in a
+ * primitive open-addressing table, so a query costs one pass over the postings of its terms with no
+ * boxing. Readers share a read lock; index updates take the write lock briefly per document.
+ */
+class PostSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int TITLE_WEIGHT = 3;  // A title hit counts like three body hits
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these", "they",
+            "this", "to", "was", "will", "with");
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalLength;
+
+    // Ids removed while a bulk build is running, so the build cannot resurrect them
+    private final Set<Long> tombstones = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    record Hits(long total, List<Long> ids) {
+    }
+
+    private record Document(String[] terms, int length) {
+    }
+
+    void startBuild() {
+        building = true;
+    }
+
+    void finishBuild() {
+        building = false;
+        tombstones.clear();
+    }
+
+    // Live updates always win over the bulk build
+    void upsert(long id, String title, String body) {
+        Map<String, Integer> frequencies = termFrequencies(title, body);
+        lock.writeLock().lock();
+        try {
+            tombstones.remove(id);
+            removeLocked(id);
+            addLocked(id, frequencies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Used by the bulk build: never overwrites a document indexed or removed by a live update meanwhile
+    void addIfAbsent(long id, String title, String body) {
+        Map<String, Integer> frequencies = termFrequencies(title, body);
+        lock.writeLock().lock();
+        try {
+            if (!documents.containsKey(id) && !tombstones.contains(id)) {
+                addLocked(id, frequencies);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (building) {
+                tombstones.add(id);
+            }
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Hits search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return new Hits(0, List.of());
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return new Hits(0, List.of());
+            }
+            float averageLength = (float) totalLength / documentCount;
+
+            List<Postings> matched = new ArrayList<>();
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null) {
+                    matched.add(list);
+                }
+            }
+            // Terms in more than half the posts carry almost no idf but dominate the cost;
+            // drop them whenever the query has something more selective to rank on
+            boolean hasSelectiveTerm = matched.stream().anyMatch(list -> list.size <= documentCount / 2);
+            if (hasSelectiveTerm) {
+                matched.removeIf(list -> list.size > documentCount / 2);
+            }
+
+            if (matched.size() == 1) {
+                Postings list = matched.get(0);
+                return new Hits(list.size, topOfSingleTerm(list, averageLength, offset, limit));
+            }
+
+            int candidates = 0;
+            for (Postings list : matched) {
+                candidates += list.size;
+            }
+            ScoreTable scores = new ScoreTable(candidates);
+
+            for (Postings list : matched) {
+                double idf = Math.log(1 + (documentCount - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    float tf = list.frequencies[i];
+                    float norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * list.lengths[i] / averageLength));
+                    scores.add(list.ids[i], (float) (idf * norm));
+                }
+            }
+
+            return new Hits(scores.size, scores.top(offset, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // With one term there is nothing to merge: rank straight off the postings, keeping only a top-k heap
+    private List<Long> topOfSingleTerm(Postings list, float averageLength, int offset, int limit) {
+        if (offset < 0 || limit <= 0 || offset >= list.size) {
+            return List.of();
+        }
+        // Never more than the postings themselves, and never overflowing near Integer.MAX_VALUE
+        int wanted = (int) Math.min((long) offset + limit, list.size);
+        float[] scores = new float[list.size];
+        for (int i = 0; i < list.size; i++) {
+            // idf is the same for every posting, so it does not affect the order
+            float tf = list.frequencies[i];
+            scores[i] = tf * (K1 + 1) / (tf + K1 * (1 - B + B * list.lengths[i] / averageLength));
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(wanted + 1, (a, b) -> {
+            int byScore = Float.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Long.compare(list.ids[a], list.ids[b]);
+        });
+        // Newest first: on equal scores a later (older) posting can never displace the heap minimum,
+        // so ties cost a single float comparison
+        for (int i = list.size - 1; i >= 0; i--) {
+            if (heap.size() < wanted) {
+                heap.add(i);
+            } else if (scores[i] > scores[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        Long[] ordered = new Long[heap.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = list.ids[heap.poll()];
+        }
+        return Arrays.asList(ordered).subList(Math.min(offset, ordered.length), ordered.length);
+    }
+
+    private void addLocked(long id, Map<String, Integer> frequencies) {
+        int length = 0;
+        for (int frequency : frequencies.values()) {
+            length += frequency;
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(id, entry.getValue(), length);
+        }
+        documents.put(id, new Document(frequencies.keySet().toArray(new String[0]), length));
+        totalLength += length;
+    }
+
+    private void removeLocked(long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms()) {
+            Postings list = postings.get(term);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= document.length();
+    }
+
+    private static Map<String, Integer> termFrequencies(String title, String body) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(title)) {
+            frequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(body)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH));
+                if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                    tokens.add(token.intern());
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Post ids, term frequencies and document lengths for one term, sorted by id.
+    // The length is copied into every posting so scoring never leaves primitive arrays.
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int[] frequencies = new int[4];
+        private int[] lengths = new int[4];
+        private int size;
+
+        void add(long id, int frequency, int length) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                frequencies[index] = frequency;
+                lengths[index] = length;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            // New posts have the highest id, so this is almost always an append
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            System.arraycopy(lengths, index, lengths, index + 1, size - index);
+            ids[index] = id;
+            frequencies[index] = frequency;
+            lengths[index] = length;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            System.arraycopy(lengths, index + 1, lengths, index, size - index - 1);
+            size--;
+            if (size > 16 && size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, ids.length / 2);
+                frequencies = Arrays.copyOf(frequencies, frequencies.length / 2);
+                lengths = Arrays.copyOf(lengths, lengths.length / 2);
+            }
+            return true;
+        }
+    }
+
+    // Open-addressing post id -> score table, avoids boxing on the hot loop
+    private static final class ScoreTable {
+        private long[] keys;
+        private float[] values;
+        private boolean[] used;
+        private int size;
+
+        // Sized up front for the expected number of distinct posts so the hot loop never rehashes
+        ScoreTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(32, expected) * 2 - 1) << 1;
+            keys = new long[capacity];
+            values = new float[capacity];
+            used = new boolean[capacity];
+        }
+
+        void add(long key, float score) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int slot = slot(key, keys.length);
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] += score;
+        }
+
+        // Highest scores first, ties broken by newest post
+        List<Long> top(int offset, int limit) {
+            if (offset < 0 || limit <= 0 || offset >= size) {
+                return List.of();
+            }
+            int wanted = (int) Math.min((long) offset + limit, size);
+            PriorityQueue<Integer> heap = new PriorityQueue<>(wanted + 1, (a, b) -> compare(a, b));
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (!used[slot]) {
+                    continue;
+                }
+                if (heap.size() < wanted) {
+                    heap.add(slot);
+                } else if (compare(slot, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(slot);
+                }
+            }
+            Long[] ordered = new Long[heap.size()];
+            for (int i = ordered.length - 1; i >= 0; i--) {
+                ordered[i] = keys[heap.poll()];
+            }
+            return Arrays.asList(ordered).subList(Math.min(offset, ordered.length), ordered.length);
+        }
+
+        private int compare(int a, int b) {
+            int byScore = Float.compare(values[a], values[b]);
+            return byScore != 0 ? byScore : Long.compare(keys[a], keys[b]);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            float[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new float[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slot(oldKeys[i], keys.length);
+                    while (used[slot]) {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(long key, int capacity) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed >>> 32) & (capacity - 1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.post.PostTextView;
+import com.example.blog.entities.Post;
+import com.example.blog.entities.Status;
+import com.example.blog.repository.PostRepository;
+import com.example.blog.util.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Full-text search over published posts. The index is built in the background at startup by
+ * walking the post table in id batches, then kept current by PostService after each commit.
+ */
+@Service
+public class PostSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSearchService.class);
+
+    private final PostRepository postRepository;
+    private final PostSearchIndex index = new PostSearchIndex();
+    private final int buildBatchSize;
+    private final int maxPageSize;
+
+    public PostSearchService(PostRepository postRepository,
+                             @Value("${blog.search.build-batch-size:1000}") int buildBatchSize,
+                             @Value("${blog.search.max-page-size:50}") int maxPageSize) {
+        this.postRepository = postRepository;
+        this.buildBatchSize = buildBatchSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public record SearchHits(long total, List<Long> postIds) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndexOnStartup() {
+        Thread builder = new Thread(this::buildIndex, "post-search-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    void buildIndex() {
+        long started = System.currentTimeMillis();
+        index.startBuild();
+        try {
+            long afterId = 0;
+            List<PostTextView> batch;
+            do {
+                batch = postRepository.findTextBatch(Status.PUBLISHED, afterId, Limit.of(buildBatchSize));
+                for (PostTextView post : batch) {
+                    index.addIfAbsent(post.getId(), post.getTitle(), post.getBody());
+                    afterId = post.getId();
+                }
+            } while (batch.size() == buildBatchSize);
+            logger.info("Search index built with {} posts in {} ms", index.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            logger.error("Search index build failed: {}", e.getMessage(), e);
+        } finally {
+            index.finishBuild();
+        }
+    }
+
+    // Only published posts are searchable; anything else is dropped from the index
+    public void onPostSaved(Post post) {
+        long id = post.getId();
+        String title = post.getTitle();
+        String body = post.getBody();
+        boolean published = post.getStatus() == Status.PUBLISHED;
+        AfterCommit.run(() -> {
+            if (published) {
+                index.upsert(id, title, body);
+            } else {
+                index.remove(id);
+            }
+        });
+    }
+
+    public void onPostDeleted(Long postId) {
+        AfterCommit.run(() -> index.remove(postId));
+    }
+
+    public SearchHits search(String query, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        // A page far past the end just comes back empty, rather than wrapping to a negative offset
+        int offset = (int) Math.min((long) Math.max(0, page) * pageSize, Integer.MAX_VALUE);
+        PostSearchIndex.Hits hits = index.search(query, offset, pageSize);
+        return new SearchHits(hits.total(), hits.ids());
+    }
+}
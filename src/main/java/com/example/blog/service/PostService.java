@@ -1,145 +1,389 @@
 package com.example.blog.service;
 
+import com.example.blog.dto.CursorPageDto;
 import com.example.blog.dto.comment.CommentDto;
+import com.example.blog.dto.comment.CommentView;
 import com.example.blog.dto.post.PostRequestDto;
 import com.example.blog.dto.post.PostResponseDto;
+import com.example.blog.dto.post.PostSummaryDto;
+import com.example.blog.dto.post.PostVersionView;
 import com.example.blog.dto.user.UserDto;
+import com.example.blog.entities.Comment;
 import com.example.blog.entities.Post;
+import com.example.blog.entities.Role;
 import com.example.blog.entities.Status;
 import com.example.blog.entities.User;
+import com.example.blog.repository.CommentRepository;
 import com.example.blog.repository.PostRepository;
 import com.example.blog.repository.UserRepository;
+import com.example.blog.util.CursorCodec;
+import com.example.blog.util.ETags;
+import com.example.blog.util.Excerpts;
 import exception.GlobalExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class PostService {
 
+    // Upper bound on the IN list used to load comments for a batch of posts
+    private static final int COMMENT_BATCH_SIZE = 500;
+
     private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
     private final UserRepository userRepository;
-    private final ImageUploadService imageUploadService;
+    private final ImageVariantService imageVariants;
+    private final PostCacheService postCache;
+    private final PostSearchService postSearch;
+    private final PostViewService postViews;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int defaultSummaryComments;
+    private final int maxSummaryComments;
 
-    public PostService(PostRepository postRepository, UserRepository userRepository, ImageUploadService imageUploadService) {
+    public PostService(PostRepository postRepository, CommentRepository commentRepository, UserRepository userRepository,
+                       ImageVariantService imageVariants,
+                       PostCacheService postCache,
+                       PostSearchService postSearch, PostViewService postViews,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${blog.feed.default-page-size:20}") int defaultPageSize,
+                       @Value("${blog.feed.max-page-size:100}") int maxPageSize,
+                       @Value("${blog.feed.summary-comments:3}") int defaultSummaryComments,
+                       @Value("${blog.feed.max-summary-comments:20}") int maxSummaryComments) {
         this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
         this.userRepository = userRepository;
-        this.imageUploadService = imageUploadService;
+        this.imageVariants = imageVariants;
+        this.postCache = postCache;
+        this.postSearch = postSearch;
+        this.postViews = postViews;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.defaultSummaryComments = defaultSummaryComments;
+        this.maxSummaryComments = maxSummaryComments;
     }
 
-    public Post createPost(PostRequestDto postRequestDto, String email, String imageUrl) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
+    public Post createPost(PostRequestDto postRequestDto, Long userId, String imageUrl) {
         Post post = new Post();
         post.setTitle(postRequestDto.getTitle());
         post.setBody(postRequestDto.getBody());
+        post.setExcerpt(Excerpts.of(postRequestDto.getBody()));
         post.setStatus(postRequestDto.getStatus());
-        post.setUser(user);
+        post.setUser(userRepository.getReferenceById(userId));  // The caller is authenticated, no need to load the user
         post.setImageUrl(imageUrl);
 
-        return postRepository.save(post);
+        Post savedPost = postRepository.save(post);
+        postCache.evictPost(savedPost.getId());
+        postSearch.onPostSaved(savedPost);
+        imageVariants.scheduleVariants(savedPost.getId(), imageUrl);
+        return savedPost;
     }
 
-    // Fetch all posts
-    public List<PostResponseDto> getAllPosts() {
-//        return postRepository.findAll(); // This retrieves all posts
-        List<Post> posts = postRepository.findAll();
-        return posts.stream().map(this::mapToPostResponseDto).collect(Collectors.toList());
+    // Fetch all posts. Cost grows with the table; prefer getFeed for anything user-facing.
+    // In summary mode each post carries its comment count and only the latest few comments
+    public List<PostResponseDto> getAllPosts(boolean summary, Integer latestComments) {
+        Integer commentLimit = resolveCommentLimit(summary, latestComments);
+        PostCacheService.PageKey key = new PostCacheService.PageKey("all", null, Long.MAX_VALUE, 0, commentLimit);
+
+        List<PostResponseDto> cached = postCache.getPage(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = postCache.generation();
+        List<PostResponseDto> posts = readOnlyTransaction.execute(tx ->
+                mapToPostResponseDtos(postRepository.findAllWithUserBy(), commentLimit, false));
+        postCache.putPage(key, posts, 0, Long.MAX_VALUE, generation);
+        return posts;
+    }
+
+    // Fetch one keyset page of the feed, newest first, optionally filtered by status
+    public CursorPageDto<PostResponseDto> getFeed(String cursor, Integer size, Status status,
+                                                  boolean summary, Integer latestComments) {
+        int pageSize = resolvePageSize(size);
+        long before = decodeCursor(cursor);
+        Integer commentLimit = resolveCommentLimit(summary, latestComments);
+        PostCacheService.PageKey key = new PostCacheService.PageKey("feed", status, before, pageSize, commentLimit);
+
+        CursorPageDto<PostResponseDto> cached = postCache.getPage(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = postCache.generation();
+        CursorPageDto<PostResponseDto> page = readOnlyTransaction.execute(tx -> {
+            // Ask for one extra row to learn whether another page exists without a COUNT(*)
+            Limit limit = Limit.of(pageSize + 1);
+            List<Post> posts = status == null
+                    ? postRepository.findByIdLessThanOrderByIdDesc(before, limit)
+                    : postRepository.findByStatusAndIdLessThanOrderByIdDesc(status, before, limit);
+
+            boolean hasMore = posts.size() > pageSize;
+            if (hasMore) {
+                posts = posts.subList(0, pageSize);
+            }
+            String nextCursor = hasMore ? CursorCodec.encode(posts.get(posts.size() - 1).getId()) : null;
+
+            return new CursorPageDto<>(mapToPostResponseDtos(posts, commentLimit, false), nextCursor, hasMore);
+        });
+
+        // The page covers ids in [last id, before); the last page reaches down to the start of the table
+        long lowerBound = page.isHasMore() ? page.getItems().get(page.getItems().size() - 1).getId() : 0;
+        postCache.putPage(key, page, lowerBound, before, generation);
+        return page;
     }
 
-    // Method to get posts by user email
-    public List<Post> getPostsByEmail(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
+    // Fetch a single post with its full body and all of its comments
+    public PostResponseDto getPostById(Long postId) {
+        PostResponseDto cached = postCache.getPost(postId);
+        if (cached != null) {
+            return cached;
+        }
 
-        return postRepository.findByUserId(user.getId()); // Fetch posts by user ID
+        long generation = postCache.generation();
+        PostResponseDto post = readOnlyTransaction.execute(tx -> {
+            Post found = postRepository.findWithUserById(postId)
+                    .orElseThrow(() -> new GlobalExceptionHandler.PostNotFoundException("Post not found"));
+            return mapToPostResponseDtos(List.of(found), null, true).get(0);
+        });
+        postCache.putPost(postId, post, generation);
+        return post;
     }
 
-    private PostResponseDto mapToPostResponseDto(Post post) {
-        // Map User to UserDto
-        User user = post.getUser();
-        UserDto userDto = new UserDto(user.getId(), user.getName(), user.getEmail(), user.getRole());
+    // ETag of the full listing; the cache generation moves on whenever any post is created, deleted or
+    // modified, so no query is needed
+    public String getAllPostsETag(boolean summary, Integer latestComments) {
+        return ETags.builder("posts")
+                .add(postCache.generation())
+                .add(commentLimitTag(resolveCommentLimit(summary, latestComments)))
+                .build();
+    }
+
+    // ETag of one feed page, from the ids and versions the page would contain
+    public String getFeedETag(String cursor, Integer size, Status status, boolean summary, Integer latestComments) {
+        int pageSize = resolvePageSize(size);
+        long before = decodeCursor(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<PostVersionView> versions = status == null
+                ? postRepository.findVersionsByIdLessThanOrderByIdDesc(before, limit)
+                : postRepository.findVersionsByStatusAndIdLessThanOrderByIdDesc(status, before, limit);
+
+        ETags.Builder etag = ETags.builder("feed")
+                .add(before, pageSize, status == null ? -1 : status.ordinal())
+                .add(commentLimitTag(resolveCommentLimit(summary, latestComments)));
+        versions.forEach(version -> etag.add(version.getId(), version.getVersion(), version.getRevision()));
+        return etag.build();
+    }
+
+    public String getPostETag(Long postId) {
+        PostVersionView version = postRepository.findVersionById(postId)
+                .orElseThrow(() -> new GlobalExceptionHandler.PostNotFoundException("Post not found"));
+        return ETags.of("post", postId, version.getVersion(), version.getRevision());
+    }
+
+    private static long commentLimitTag(Integer commentLimit) {
+        return commentLimit == null ? -1 : commentLimit;
+    }
+
+    // Summaries (no comments) for the given ids, in the order given; ids that no longer exist are skipped
+    public List<PostResponseDto> getPostSummaries(List<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<PostResponseDto> found = readOnlyTransaction.execute(tx ->
+                mapToPostResponseDtos(postRepository.findWithUserByIdIn(postIds), 0, false));
+
+        Map<Long, PostResponseDto> byId = new HashMap<>();
+        found.forEach(post -> byId.put(post.getId(), post));
+        return postIds.stream().map(byId::get).filter(post -> post != null).collect(Collectors.toList());
+    }
+
+    private static long decodeCursor(String cursor) {
+        return (cursor == null || cursor.isBlank()) ? Long.MAX_VALUE : CursorCodec.decode(cursor);
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    // Returns null when every comment should be included
+    private Integer resolveCommentLimit(boolean summary, Integer latestComments) {
+        if (!summary) {
+            return null;
+        }
+        if (latestComments == null || latestComments < 0) {
+            return defaultSummaryComments;
+        }
+        return Math.min(latestComments, maxSummaryComments);
+    }
+
+    // All of the user's posts, served from idx_post_user_id
+    public List<Post> getPostsByUser(Long userId) {
+        return postRepository.findByUserId(userId);
+    }
+
+    // All of the user's posts with the given status, served from idx_post_user_status_id
+    public List<Post> getPostsByStatus(Long userId, Status status) {
+        return postRepository.findByUserIdAndStatus(userId, status);
+    }
+
+    // One keyset page of the user's own posts, newest first, optionally filtered by status
+    public CursorPageDto<PostSummaryDto> getPostsByUser(Long userId, Status status, String cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        long before = decodeCursor(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<PostSummaryDto> posts = status == null
+                ? postRepository.findSummariesByUser(userId, before, limit)
+                : postRepository.findSummariesByUserAndStatus(userId, status, before, limit);
+
+        boolean hasMore = posts.size() > pageSize;
+        if (hasMore) {
+            posts = posts.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? CursorCodec.encode(posts.get(posts.size() - 1).getId()) : null;
+        return new CursorPageDto<>(posts, nextCursor, hasMore);
+    }
 
-        // Map Comments to CommentDto List
-        List<CommentDto> commentDtos = post.getComments()
-                .stream()
-                .map(comment -> new CommentDto(
-                        comment.getId(),
-                        comment.getBody(),
-                        comment.getCreatedAt(),
-                        new UserDto(comment.getUser().getId(), comment.getUser().getName(), comment.getUser().getEmail(), comment.getUser().getRole())
-                ))
+    // Posts must come with their user already fetched; comments for the whole batch are loaded in one query.
+    // The body is lazy and costs a query per post, so list views pass withBody=false and get the excerpt only
+    private List<PostResponseDto> mapToPostResponseDtos(List<Post> posts, Integer commentLimit, boolean withBody) {
+        Map<Long, List<CommentDto>> commentsByPost;
+        if (commentLimit == null) {
+            commentsByPost = loadCommentDtos(posts);
+        } else if (commentLimit == 0) {
+            commentsByPost = Collections.emptyMap();
+        } else {
+            commentsByPost = loadLatestCommentDtos(posts, commentLimit);
+        }
+
+        return posts.stream()
+                .map(post -> mapToPostResponseDto(post, withBody,
+                        commentsByPost.getOrDefault(post.getId(), Collections.emptyList())))
                 .collect(Collectors.toList());
+    }
+
+    private Map<Long, List<CommentDto>> loadCommentDtos(List<Post> posts) {
+        Map<Long, List<CommentDto>> commentsByPost = new HashMap<>();
+        List<Long> postIds = posts.stream().map(Post::getId).collect(Collectors.toList());
+
+        for (int from = 0; from < postIds.size(); from += COMMENT_BATCH_SIZE) {
+            List<Long> batch = postIds.subList(from, Math.min(from + COMMENT_BATCH_SIZE, postIds.size()));
+            for (Comment comment : commentRepository.findByPostIdInOrderByCreatedAtAscIdAsc(batch)) {
+                // getPost().getId() reads the foreign key without initializing the post
+                commentsByPost.computeIfAbsent(comment.getPost().getId(), id -> new ArrayList<>())
+                        .add(mapToCommentDto(comment));
+            }
+        }
+        return commentsByPost;
+    }
+
+    private Map<Long, List<CommentDto>> loadLatestCommentDtos(List<Post> posts, int perPost) {
+        Map<Long, List<CommentDto>> commentsByPost = new HashMap<>();
+        // Posts without comments need no lookup at all
+        List<Long> postIds = posts.stream()
+                .filter(post -> post.getCommentCount() > 0)
+                .map(Post::getId)
+                .collect(Collectors.toList());
+
+        for (int from = 0; from < postIds.size(); from += COMMENT_BATCH_SIZE) {
+            List<Long> batch = postIds.subList(from, Math.min(from + COMMENT_BATCH_SIZE, postIds.size()));
+            for (CommentView view : commentRepository.findLatestByPostIds(batch, perPost)) {
+                UserDto author = new UserDto(view.getUserId(), view.getUserName(), view.getUserEmail(),
+                        view.getUserRole() == null ? null : Role.valueOf(view.getUserRole()));
+                commentsByPost.computeIfAbsent(view.getPostId(), id -> new ArrayList<>())
+                        .add(new CommentDto(view.getId(), view.getBody(), view.getCreatedAt(), author));
+            }
+        }
+        return commentsByPost;
+    }
+
+    private CommentDto mapToCommentDto(Comment comment) {
+        return new CommentDto(comment.getId(), comment.getBody(), comment.getCreatedAt(), new UserDto(comment.getUser()));
+    }
+
+    private PostResponseDto mapToPostResponseDto(Post post, boolean withBody, List<CommentDto> commentDtos) {
+        User user = post.getUser();
+        UserDto userDto = new UserDto(user.getId(), user.getName(), user.getEmail(), user.getRole());
 
-        // Return the PostResponseDto with comments
         return new PostResponseDto(
                 post.getId(),
                 post.getTitle(),
-                post.getBody(),
+                withBody ? post.getBody() : null,
+                post.getExcerpt(),
                 post.getStatus().toString(),
-                post.getImageUrl(),
+                withBody || post.getMediumUrl() == null ? post.getImageUrl() : post.getMediumUrl(),
+                post.getThumbnailUrl(),
                 userDto,
-                commentDtos  // Include the list of comment DTOs
+                post.getCommentCount(),
+                commentDtos
         );
     }
 
 
-    // Delete a post by ID and email (only if the post belongs to the user)
-    public void deletePost(Long postId, String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
+    // Delete a post by ID (only if the post belongs to the user), together with its view count
+    @Transactional
+    public void deletePost(Long postId, Long userId) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new GlobalExceptionHandler.PostNotFoundException("Post not found"));
 
         // Ensure the post belongs to the user
-        if (!post.getUser().getId().equals(user.getId())) {
+        if (!post.getUser().getId().equals(userId)) {
             throw new GlobalExceptionHandler.UnauthorizedAccessException("You are not allowed to delete this post.");
         }
 
         postRepository.delete(post);
+        postCache.evictPost(postId);
+        postSearch.onPostDeleted(postId);
+        postViews.forget(postId);
     }
 
-    // Update a post by ID and email (only if the post belongs to the user)
-    public Post updatePost(Long postId, PostRequestDto postRequestDto, String email, MultipartFile image) throws IOException {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
+    // Update a post by ID (only if the post belongs to the user)
+    // imageUrl is an upload already stored for this update, or null to keep the current image
+    public Post updatePost(Long postId, PostRequestDto postRequestDto, Long userId, String imageUrl) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new GlobalExceptionHandler.PostNotFoundException("Post not found"));
 
         // Ensure the post belongs to the user
-        if (!post.getUser().getId().equals(user.getId())) {
+        if (!post.getUser().getId().equals(userId)) {
             throw new GlobalExceptionHandler.UnauthorizedAccessException("You are not allowed to update this post.");
         }
 
         // Update the post details
         post.setTitle(postRequestDto.getTitle());
         post.setBody(postRequestDto.getBody());
+        post.setExcerpt(Excerpts.of(postRequestDto.getBody()));
         post.setStatus(postRequestDto.getStatus());
 
-        // Handle image upload if present
-        if (image != null && !image.isEmpty()) {
-            String imageUrl = imageUploadService.uploadImage(image);
+        if (imageUrl != null) {
             post.setImageUrl(imageUrl);  // Update the image URL
+            post.setThumbnailUrl(null);  // The old variants show the old image
+            post.setMediumUrl(null);
         }
 
-        return postRepository.save(post);
-    }
-
-
-    // Get posts by status
-    public List<Post> getPostsByStatus(String email,Status status) {
-        // Find the user by email first
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
-
-        // Now find posts by the user's ID and status
-        return postRepository.findByUserIdAndStatus(user.getId(), status);
+        Post savedPost = postRepository.save(post);
+        postCache.evictPost(postId);
+        postSearch.onPostSaved(savedPost);
+        if (savedPost.getThumbnailUrl() == null) {
+            imageVariants.scheduleVariants(postId, savedPost.getImageUrl());
+        }
+        return savedPost;
     }
 
 }
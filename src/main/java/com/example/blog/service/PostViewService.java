@@ -0,0 +1,252 @@
+package com.example.blog.service;
+
+import com.example.blog.entities.PostViewCount;
+import com.example.blog.repository.PostViewCountRepository;
+import com.example.blog.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Post view counting that never writes to the database on the request path.
+ *
+ * A view is one LongAdder increment. A scheduled flush sends the deltas since the last flush to
+ * post_view_count in one JDBC batch, and folds them into exponentially decayed scores from which
+ * the trending list is rebuilt. Deltas are only marked flushed once the batch succeeds, and a final
+ * flush runs on shutdown, so views are not lost to a failed batch or a graceful restart.
+ *
+ * Idle counters are retired rather than dropped: a view that lands on a counter after it was retired
+ * is taken back and recorded again on a fresh one, and whatever reached the retired counter before is
+ * sent by the next flush, once no request can still be adding to it. Views of a deleted post are
+ * ignored, and the upsert only ever writes rows for posts that still exist.
+ */
+@Service
+public class PostViewService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostViewService.class);
+
+    // Selecting the post keeps a flush that overlaps its deletion from writing the row back
+    private static final String UPSERT =
+            "INSERT INTO post_view_count (post_id, views) SELECT p.id, ? FROM post p WHERE p.id = ? " +
+            "ON DUPLICATE KEY UPDATE views = views + ?";
+
+    // Scores below this have decayed to nothing and are dropped
+    private static final double MIN_SCORE = 0.01;
+
+    // Counters with no views for this many flushes are dropped to keep the map small
+    private static final int DEFAULT_IDLE_FLUSHES = 60;
+
+    static final class Counter {
+        final LongAdder views = new LongAdder();
+        volatile long flushed;  // Written only by the flush, under its lock
+        volatile boolean retired;  // No longer in the map; recordView must not leave views on it
+        int idleFlushes;
+    }
+
+    private record Delta(Long postId, Counter counter, long views) {
+    }
+
+    private record Retired(Long postId, Counter counter) {
+    }
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    // Posts deleted recently enough that a request may still be recording a view of them
+    private final Cache<Long, Boolean> deletedPosts = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(100_000)
+            .build();
+    private final JdbcTemplate jdbcTemplate;
+    private final PostViewCountRepository viewCountRepository;
+    private final double halfLifeNanos;
+    private final int trendingSize;
+    private final int idleFlushes;
+    private final LongSupplier nanoTime;
+
+    // Owned by flush(), guarded by this
+    private final Map<Long, Double> scores = new HashMap<>();
+    private List<Retired> retiring = new ArrayList<>();
+    private long lastDecayNanos;
+
+    private volatile List<Long> trending = List.of();
+
+    @Autowired
+    public PostViewService(JdbcTemplate jdbcTemplate, PostViewCountRepository viewCountRepository,
+                           @Value("${blog.views.trending-half-life:PT6H}") Duration trendingHalfLife,
+                           @Value("${blog.views.trending-size:100}") int trendingSize) {
+        this(jdbcTemplate, viewCountRepository, trendingHalfLife, trendingSize, DEFAULT_IDLE_FLUSHES, System::nanoTime);
+    }
+
+    // nanoTime stands in for System.nanoTime, so tests can move time by hand; a low idleFlushes makes
+    // counters retire, and race their retirement, on almost every flush
+    PostViewService(JdbcTemplate jdbcTemplate, PostViewCountRepository viewCountRepository, Duration trendingHalfLife,
+                    int trendingSize, int idleFlushes, LongSupplier nanoTime) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.viewCountRepository = viewCountRepository;
+        this.halfLifeNanos = trendingHalfLife.toNanos();
+        this.trendingSize = trendingSize;
+        this.idleFlushes = Math.max(1, idleFlushes);
+        this.nanoTime = nanoTime;
+        this.lastDecayNanos = nanoTime.getAsLong();
+    }
+
+    // Request path: a map lookup and an uncontended add in the common case
+    public void recordView(Long postId) {
+        while (deletedPosts.getIfPresent(postId) == null) {
+            if (addTo(postId, counterFor(postId))) {
+                return;
+            }
+        }
+    }
+
+    // Package-private so tests can hold on to a counter across flushes, as a slow request would
+    Counter counterFor(Long postId) {
+        Counter counter = counters.get(postId);
+        return counter != null ? counter : counters.computeIfAbsent(postId, id -> new Counter());
+    }
+
+    // False if the counter was retired before the flush could have seen this view; it is taken back then
+    boolean addTo(Long postId, Counter counter) {
+        counter.views.increment();
+        if (!counter.retired) {
+            return true;
+        }
+        counter.views.decrement();
+        counters.remove(postId, counter);
+        return false;
+    }
+
+    public long getViewCount(Long postId) {
+        long flushed = viewCountRepository.findById(postId).map(PostViewCount::getViews).orElse(0L);
+        Counter counter = counters.get(postId);
+        return counter == null ? flushed : flushed + counter.views.sum() - counter.flushed;
+    }
+
+    // Most viewed posts, recent views weighing more; ids only, served from memory
+    public List<Long> getTrendingPostIds(int limit) {
+        List<Long> current = trending;
+        return current.subList(0, Math.max(0, Math.min(limit, current.size())));
+    }
+
+    public int getTrendingSize() {
+        return trendingSize;
+    }
+
+    // Called in the transaction deleting a post; never waits for a flush in progress
+    public void forget(Long postId) {
+        viewCountRepository.deleteById(postId);
+        AfterCommit.run(() -> {
+            deletedPosts.put(postId, Boolean.TRUE);
+            Counter counter = counters.remove(postId);
+            if (counter != null) {
+                counter.retired = true;
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${blog.views.flush-interval:PT5S}")
+    public synchronized void flush() {
+        List<Retired> retiredNow = new ArrayList<>();
+        List<Delta> deltas = collectDeltas(retiredNow);
+        if (!deltas.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT, deltas, deltas.size(), (ps, delta) -> {
+                    ps.setLong(1, delta.views());
+                    ps.setLong(2, delta.postId());
+                    ps.setLong(3, delta.views());
+                });
+            } catch (DataAccessException e) {
+                // Nothing is marked flushed, so the next run sends the same views again
+                logger.warn("Flushing {} view counters failed, will retry", deltas.size(), e);
+                retiring.addAll(retiredNow);
+                return;
+            }
+            deltas.forEach(delta -> delta.counter().flushed += delta.views());
+        }
+        // Those retired earlier are fully sent now; the ones just retired get one more run
+        retiring = retiredNow;
+        updateTrending(deltas);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private List<Delta> collectDeltas(List<Retired> retiredNow) {
+        List<Delta> deltas = new ArrayList<>();
+        // Retired by an earlier run: views that raced the retirement have landed by now, and any later
+        // ones were taken back by recordView
+        for (Retired retired : retiring) {
+            long views = retired.counter().views.sum() - retired.counter().flushed;
+            if (views > 0 && deletedPosts.getIfPresent(retired.postId()) == null) {
+                deltas.add(new Delta(retired.postId(), retired.counter(), views));
+            }
+        }
+
+        for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+            Long postId = entry.getKey();
+            Counter counter = entry.getValue();
+            if (deletedPosts.getIfPresent(postId) != null) {
+                // Created by a view that raced the delete
+                counter.retired = true;
+                counters.remove(postId, counter);
+                continue;
+            }
+            long views = counter.views.sum() - counter.flushed;
+            if (views > 0) {
+                counter.idleFlushes = 0;
+                deltas.add(new Delta(postId, counter, views));
+            } else if (++counter.idleFlushes >= idleFlushes) {
+                counter.retired = true;
+                counters.remove(postId, counter);
+                retiredNow.add(new Retired(postId, counter));
+            }
+        }
+        return deltas;
+    }
+
+    private void updateTrending(List<Delta> deltas) {
+        long now = nanoTime.getAsLong();
+        double decay = Math.pow(0.5, (now - lastDecayNanos) / halfLifeNanos);
+        lastDecayNanos = now;
+
+        scores.replaceAll((postId, score) -> score * decay);
+        scores.values().removeIf(score -> score < MIN_SCORE);
+        scores.keySet().removeIf(postId -> deletedPosts.getIfPresent(postId) != null);
+        deltas.forEach(delta -> scores.merge(delta.postId(), (double) delta.views(), Double::sum));
+
+        trending = scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(trendingSize)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("blog.views.counters", counters, Map::size)
+                .description("Posts with an in-memory view counter")
+                .register(registry);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.user.TokenResponseDto;
+import com.example.blog.dto.user.UserIdentity;
+import com.example.blog.entities.RefreshToken;
+import com.example.blog.repository.RefreshTokenRepository;
+import com.example.blog.repository.UserRepository;
+import com.example.blog.util.JwtUtil;
+import exception.GlobalExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Sessions of short-lived access tokens kept alive by rotating refresh tokens.
+ *
+ * Login starts a session; each refresh consumes the presented token and returns a new access and
+ * refresh token for the same session. Reusing a consumed token, or a bumped token version, revokes
+ * the session, which also lists it in SessionRevocationService so its outstanding access tokens stop
+ * working before they expire.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokens;
+    private final UserRepository userRepository;
+    private final TokenRevocationService tokenRevocation;
+    private final SessionRevocationService sessionRevocation;
+    private final JwtUtil jwtUtil;
+    private final Duration refreshTokenTtl;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokens, UserRepository userRepository,
+                               TokenRevocationService tokenRevocation, SessionRevocationService sessionRevocation,
+                               JwtUtil jwtUtil,
+                               @Value("${blog.jwt.refresh-ttl:P30D}") Duration refreshTokenTtl) {
+        this.refreshTokens = refreshTokens;
+        this.userRepository = userRepository;
+        this.tokenRevocation = tokenRevocation;
+        this.sessionRevocation = sessionRevocation;
+        this.jwtUtil = jwtUtil;
+        this.refreshTokenTtl = refreshTokenTtl;
+    }
+
+    @Transactional
+    public TokenResponseDto startSession(UserIdentity user, long tokenVersion) {
+        return issue(user, tokenVersion, UUID.randomUUID());
+    }
+
+    // The revocation must survive the exception, hence noRollbackFor
+    @Transactional(noRollbackFor = GlobalExceptionHandler.InvalidRefreshTokenException.class)
+    public TokenResponseDto refresh(String refreshToken) {
+        RefreshToken current = find(refreshToken);
+        Instant now = Instant.now();
+        if (current.getRevokedAt() != null || !current.getExpiresAt().isAfter(now)) {
+            throw new GlobalExceptionHandler.InvalidRefreshTokenException("Refresh token is no longer valid");
+        }
+        if (refreshTokens.markUsed(current.getId(), now) == 0) {
+            // Already exchanged once, so another party holds a copy of this token
+            revokeSession(current.getSessionId(), now);
+            throw new GlobalExceptionHandler.InvalidRefreshTokenException("Refresh token was already used");
+        }
+
+        long tokenVersion = tokenRevocation.currentVersion(current.getUserId());
+        if (tokenVersion != current.getTokenVersion()) {
+            revokeSession(current.getSessionId(), now);
+            throw new GlobalExceptionHandler.InvalidRefreshTokenException("Session has been revoked");
+        }
+        UserIdentity user = userRepository.findById(current.getUserId())
+                .map(UserIdentity::of)
+                .orElseThrow(() -> new GlobalExceptionHandler.InvalidRefreshTokenException("Session has been revoked"));
+        return issue(user, tokenVersion, UUID.fromString(current.getSessionId()));
+    }
+
+    @Transactional
+    public void endSession(String refreshToken) {
+        revokeSession(find(refreshToken).getSessionId(), Instant.now());
+    }
+
+    private RefreshToken find(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new GlobalExceptionHandler.InvalidRefreshTokenException("Refresh token is required");
+        }
+        return refreshTokens.findByTokenHash(hash(refreshToken))
+                .orElseThrow(() -> new GlobalExceptionHandler.InvalidRefreshTokenException("Unknown refresh token"));
+    }
+
+    private void revokeSession(String sessionId, Instant now) {
+        refreshTokens.revokeSession(sessionId, now);
+        sessionRevocation.revoke(UUID.fromString(sessionId));
+    }
+
+    private TokenResponseDto issue(UserIdentity user, long tokenVersion, UUID sessionId) {
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+
+        RefreshToken row = new RefreshToken();
+        row.setTokenHash(hash(refreshToken));
+        row.setSessionId(sessionId.toString());
+        row.setUserId(user.id());
+        row.setTokenVersion(tokenVersion);
+        row.setExpiresAt(Instant.now().plus(refreshTokenTtl));
+        refreshTokens.save(row);
+
+        String accessToken = jwtUtil.generateToken(user, tokenVersion, sessionId);
+        return new TokenResponseDto(accessToken, refreshToken, jwtUtil.getAccessTokenTtl().toSeconds());
+    }
+
+    private static String hash(String refreshToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Rows are kept one access token lifetime past expiry so a restart can still reload recent revocations
+    @Scheduled(fixedDelayString = "${blog.auth.refresh.purge-interval:PT1H}")
+    public void purgeExpired() {
+        refreshTokens.deleteExpiredBefore(Instant.now().minus(jwtUtil.getAccessTokenTtl()));
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.blog.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Packs small uploads into a few large segment files under uploads/segments instead of one file each,
+ * so millions of thumbnails cost a handful of inodes and back up as a handful of sequential copies.
+ * Uploads larger than max-entry-size, and everything stored before this backend was switched on, stay
+ * plain files in FileUploadStorage.
+ *
+ * Segments are append-only and memory-mapped whole. Each record is a header, the URL and the bytes:
+ *
+ *     int magic | byte flags | long lastModified | int length | short urlLength | url | content
+ *
+ * The index of URL to segment, offset and length is kept in memory and rebuilt by scanning the record
+ * headers at startup. Reads are slices of the mapping, so a request is answered from the page cache
+ * with no system call. The magic is written last, so a record cut short by a crash is invisible and
+ * overwritten by the next append. Deleting flags the record in place; compaction copies the live
+ * records of mostly-deleted segments to the end of the active one and removes the old file. Readers
+ * still holding a slice of a removed segment keep the mapping alive until they are done.
+ */
+@Service
+@ConditionalOnProperty(name = "blog.uploads.storage", havingValue = "segments")
+public class SegmentUploadStorage implements UploadStorage, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentUploadStorage.class);
+
+    private static final int MAGIC = 0x424C4F47;  // "BLOG"
+    private static final byte DELETED = 1;
+    private static final int FLAGS_OFFSET = 4;
+    private static final int LAST_MODIFIED_OFFSET = 5;
+    private static final int LENGTH_OFFSET = 13;
+    private static final int URL_LENGTH_OFFSET = 17;
+    private static final int HEADER_SIZE = 19;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int used;  // End of the last record; guarded by the storage's lock
+        long dead;  // Bytes of deleted records
+
+        Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private record Location(Segment segment, int offset, int urlLength, int length) {
+        int size() {
+            return HEADER_SIZE + urlLength + length;
+        }
+
+        long lastModified() {
+            return segment.buffer.getLong(offset + LAST_MODIFIED_OFFSET);
+        }
+
+        ByteBuffer content() {
+            return segment.buffer.slice(offset + HEADER_SIZE + urlLength, length).asReadOnlyBuffer();
+        }
+    }
+
+    private final FileUploadStorage files;
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxEntrySize;
+    private final double compactThreshold;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+
+    @Autowired
+    public SegmentUploadStorage(@Value("${blog.uploads.segments.segment-size:256MB}") DataSize segmentSize,
+                                @Value("${blog.uploads.segments.max-entry-size:1MB}") DataSize maxEntrySize,
+                                @Value("${blog.uploads.segments.compact-threshold:0.5}") double compactThreshold)
+            throws IOException {
+        this(Paths.get(System.getProperty("user.dir"), "uploads"), segmentSize, maxEntrySize, compactThreshold);
+    }
+
+    SegmentUploadStorage(Path root, DataSize segmentSize, DataSize maxEntrySize, double compactThreshold)
+            throws IOException {
+        // Offsets are ints, and a record must fit a segment
+        this.segmentSize = (int) Math.min(segmentSize.toBytes(), 1L << 30);
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), this.segmentSize / 2);
+        this.compactThreshold = compactThreshold;
+        this.files = new FileUploadStorage(root);
+        this.directory = root.toAbsolutePath().normalize().resolve(FileUploadStorage.SEGMENTS);
+        open();
+    }
+
+    private synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (var listing = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            listing.forEach(paths::add);
+        }
+        for (Path path : paths) {
+            Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+            if (matcher.matches()) {
+                Segment segment = map(Integer.parseInt(matcher.group(1)), path, Files.size(path));
+                segments.put(segment.id, segment);
+            }
+        }
+        // Oldest first, so a URL compacted into a later segment ends up pointing there
+        for (Segment segment : segments.values()) {
+            scan(segment);
+        }
+        active = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+        logger.info("Opened {} upload segments holding {} uploads", segments.size(), index.size());
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity() && buffer.getInt(offset) == MAGIC) {
+            int length = buffer.getInt(offset + LENGTH_OFFSET);
+            int urlLength = buffer.getShort(offset + URL_LENGTH_OFFSET);
+            Location location = new Location(segment, offset, urlLength, length);
+            if (buffer.get(offset + FLAGS_OFFSET) == DELETED) {
+                segment.dead += location.size();
+            } else {
+                byte[] url = new byte[urlLength];
+                buffer.get(offset + HEADER_SIZE, url);
+                Location previous = index.put(new String(url, StandardCharsets.UTF_8), location);
+                if (previous != null) {
+                    previous.segment().dead += previous.size();
+                }
+            }
+            offset += location.size();
+        }
+        segment.used = offset;
+    }
+
+    @Override
+    public Path incomingDir() {
+        return files.incomingDir();
+    }
+
+    @Override
+    public void put(String url, Path file) throws IOException {
+        long size = Files.size(file);
+        if (size > maxEntrySize) {
+            files.put(url, file);
+            return;
+        }
+        synchronized (this) {
+            if (index.containsKey(url)) {
+                return;
+            }
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                index.put(url, append(url, (int) size, source, System.currentTimeMillis()));
+            }
+        }
+    }
+
+    // Writes one record at the end of the active segment, starting a new segment if it does not fit
+    private Location append(String url, int length, ReadableByteChannel source, long lastModified) throws IOException {
+        byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER_SIZE + urlBytes.length + length;
+        if (active.buffer.capacity() - active.used < size) {
+            active = createSegment(active.id + 1);
+        }
+        Segment segment = active;
+        int offset = segment.used;
+        MappedByteBuffer buffer = segment.buffer;
+
+        buffer.put(offset + HEADER_SIZE, urlBytes);
+        ByteBuffer content = buffer.slice(offset + HEADER_SIZE + urlBytes.length, length);
+        while (content.hasRemaining() && source.read(content) >= 0) {
+            // Copy straight into the mapping
+        }
+        if (content.hasRemaining()) {
+            throw new IOException("Upload shrank while it was stored: " + url);
+        }
+        buffer.put(offset + FLAGS_OFFSET, (byte) 0);
+        buffer.putLong(offset + LAST_MODIFIED_OFFSET, lastModified);
+        buffer.putInt(offset + LENGTH_OFFSET, length);
+        buffer.putShort(offset + URL_LENGTH_OFFSET, (short) urlBytes.length);
+        buffer.force(offset, size);
+        buffer.putInt(offset, MAGIC);
+        buffer.force(offset, Integer.BYTES);
+
+        segment.used = offset + size;
+        return new Location(segment, offset, urlBytes.length, length);
+    }
+
+    @Override
+    public Upload find(String url) throws IOException {
+        Location location = index.get(url);
+        if (location == null) {
+            return files.find(url);
+        }
+        return new Upload(location.length(), location.lastModified(), null, location.content());
+    }
+
+    @Override
+    public synchronized void touch(String url) throws IOException {
+        Location location = index.get(url);
+        if (location == null) {
+            files.touch(url);
+            return;
+        }
+        location.segment().buffer.putLong(location.offset() + LAST_MODIFIED_OFFSET, System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean delete(String url) throws IOException {
+        synchronized (this) {
+            Location location = index.remove(url);
+            if (location != null) {
+                Segment segment = location.segment();
+                segment.buffer.put(location.offset() + FLAGS_OFFSET, DELETED);
+                segment.buffer.force(location.offset(), HEADER_SIZE);
+                segment.dead += location.size();
+                return true;
+            }
+        }
+        return files.delete(url);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (!visitor.visit(entry.getKey(), location.length(), location.lastModified())) {
+                return;
+            }
+        }
+        files.forEach(visitor);
+    }
+
+    /**
+     * Rewrites every segment other than the active one in which at least compact-threshold of the
+     * written bytes belong to deleted records, then removes it.
+     */
+    @Override
+    public void compact() throws IOException {
+        for (Segment segment : List.copyOf(segments.values())) {
+            boolean worthIt;
+            synchronized (this) {
+                worthIt = segment != active && segment.used > 0
+                        && (double) segment.dead / segment.used >= compactThreshold;
+            }
+            if (worthIt) {
+                compact(segment);
+            }
+        }
+    }
+
+    private synchronized void compact(Segment segment) throws IOException {
+        long reclaimed = segment.dead;
+        int moved = 0;
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment() != segment) {
+                continue;
+            }
+            try (var source = new ByteBufferChannel(location.content())) {
+                entry.setValue(append(entry.getKey(), location.length(), source, location.lastModified()));
+            }
+            moved++;
+        }
+        segments.remove(segment.id);
+        Files.delete(segment.path);
+        logger.info("Compacted upload segment {}: moved {} uploads, freed {} bytes", segment.id, moved, reclaimed);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("segment-%06d.dat", id));
+        Segment segment = map(id, path, segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    // Maps the segment at the given size, growing the file to it; unwritten space stays sparse on disk
+    private static Segment map(int id, Path path, long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+            // The mapping outlives the channel
+            return new Segment(id, path, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    // Lets append copy from a mapped slice the same way it copies from a file
+    private static final class ByteBufferChannel implements ReadableByteChannel {
+        private final ByteBuffer source;
+
+        ByteBufferChannel(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(source.remaining(), target.remaining());
+            target.put(target.position(), source, source.position(), count);
+            target.position(target.position() + count);
+            source.position(source.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("blog.uploads.segments.count", segments, Map::size)
+                .description("Upload segment files")
+                .register(registry);
+        Gauge.builder("blog.uploads.segments.entries", index, Map::size)
+                .description("Uploads packed into segments")
+                .register(registry);
+        Gauge.builder("blog.uploads.segments.dead", this, SegmentUploadStorage::deadBytes)
+                .baseUnit("bytes")
+                .description("Segment bytes held by deleted uploads until compaction")
+                .register(registry);
+    }
+
+    private synchronized double deadBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.dead).sum();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.blog.service;
+
+import com.example.blog.repository.RefreshTokenRepository;
+import com.example.blog.util.AfterCommit;
+import com.example.blog.util.BloomFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory denylist of revoked sessions, checked by JwtRequestFilter on every request that carries
+ * a "sid" claim.
+ *
+ * A Bloom filter answers the common case (not revoked) with a few bit reads and no allocation; only
+ * its rare positives are confirmed against the exact map. A session only needs to stay listed until
+ * the last access token minted before its revocation expires, so entries are dropped after one access
+ * token lifetime and the filter is rebuilt without them. On startup the list is reloaded from the
+ * refresh_token table.
+ */
+@Service
+public class SessionRevocationService implements MeterBinder {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final RefreshTokenRepository refreshTokens;
+    private final Duration accessTokenTtl;
+    private final int expectedSessions;
+
+    // Session id -> when the last access token that may name it expires
+    private final Map<UUID, Instant> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+
+    public SessionRevocationService(RefreshTokenRepository refreshTokens,
+                                    @Value("${blog.jwt.access-ttl:PT15M}") Duration accessTokenTtl,
+                                    @Value("${blog.auth.revocation.expected-sessions:10000}") int expectedSessions) {
+        this.refreshTokens = refreshTokens;
+        this.accessTokenTtl = accessTokenTtl;
+        this.expectedSessions = expectedSessions;
+        this.filter = new BloomFilter(expectedSessions, FALSE_POSITIVE_RATE);
+    }
+
+    @PostConstruct
+    void loadRecentRevocations() {
+        Instant until = Instant.now().plus(accessTokenTtl);
+        for (String sessionId : refreshTokens.findSessionsRevokedSince(Instant.now().minus(accessTokenTtl))) {
+            add(UUID.fromString(sessionId), until);
+        }
+    }
+
+    public boolean isRevoked(UUID sessionId) {
+        return filter.mightContain(sessionId) && revoked.containsKey(sessionId);
+    }
+
+    // Lists the session once the transaction that revoked its refresh tokens commits
+    public void revoke(UUID sessionId) {
+        AfterCommit.run(() -> add(sessionId, Instant.now().plus(accessTokenTtl)));
+    }
+
+    // Adds and rebuilds share a lock so a rebuilt filter never misses an entry; lookups take no lock
+    private synchronized void add(UUID sessionId, Instant until) {
+        revoked.merge(sessionId, until, (a, b) -> a.isAfter(b) ? a : b);
+        filter.add(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${blog.auth.revocation.purge-interval:PT1M}")
+    public synchronized void purgeExpired() {
+        Instant now = Instant.now();
+        if (!revoked.values().removeIf(until -> until.isBefore(now))) {
+            return;
+        }
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedSessions, revoked.size() * 2), FALSE_POSITIVE_RATE);
+        revoked.keySet().forEach(rebuilt::add);
+        filter = rebuilt;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("blog.auth.revoked.sessions", revoked, Map::size)
+                .description("Revoked sessions whose access tokens may still be presented")
+                .register(registry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.blog.service;
+
+import com.example.blog.repository.UserRepository;
+import com.example.blog.util.AfterCommit;
+import com.example.blog.util.VerifiedToken;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Decides whether a stateless token is still good without a query per request.
+ *
+ * Every user has a token version, stored on the user row and copied into each token as "ver".
+ * A token is current while its ver equals the user's version. Bumping the version (role or email
+ * change) or deleting the user locks out every token issued before. Versions are cached in memory
+ * and loaded once per user; the cache entry is dropped after every bump commits, so the next
+ * request sees the new version.
+ */
+@Service
+public class TokenRevocationService implements MeterBinder {
+
+    // Cached for users that no longer exist; no token version can match it
+    private static final long NO_USER = -1;
+
+    private final UserRepository userRepository;
+    private final LoadingCache<Long, Long> versions;
+
+    public TokenRevocationService(UserRepository userRepository,
+                                  @Value("${blog.auth.token-versions.max-size:100000}") long maxUsers) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .recordStats()
+                .build(userId -> userRepository.findTokenVersionById(userId).orElse(NO_USER));
+    }
+
+    public boolean isCurrent(VerifiedToken token) {
+        return token.tokenVersion() == versions.get(token.userId()).longValue();
+    }
+
+    // The version new tokens must carry; NO_USER if the user is gone
+    public long currentVersion(Long userId) {
+        return versions.get(userId);
+    }
+
+    // Invalidates every token the user holds, e.g. after a role or email change
+    @Transactional
+    public void revokeTokens(Long userId) {
+        userRepository.incrementTokenVersion(userId);
+        AfterCommit.run(() -> versions.invalidate(userId));
+    }
+
+    // Called after the user row is deleted; the reload finds no row and caches NO_USER
+    public void userDeleted(Long userId) {
+        AfterCommit.run(() -> versions.invalidate(userId));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, versions, "auth.token.versions");
+    }
+}
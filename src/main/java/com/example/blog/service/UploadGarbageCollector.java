@@ -0,0 +1,271 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.post.PostImageUrlsView;
+import com.example.blog.repository.PostRepository;
+import com.example.blog.repository.StoredFileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+/**
+ * Removes uploads that no post points at any more: images replaced or deleted along with their post or
+ * author, their thumbnail and medium variants, legacy files, and temporary files left by a crash.
+ *
+ * A run first streams every image URL still referenced by a post, then walks the upload storage and
+ * deletes each upload outside that set last modified before the grace period, then lets the storage
+ * compact. Uploads made after the snapshot are younger than that, and reusing an existing file touches
+ * it under the same UploadLocks lock the delete holds, so a post being saved never loses its image.
+ * The walk is paced to a fixed number of uploads per second, on its own thread, so it neither floods
+ * the disk nor holds up the other scheduled jobs.
+ */
+@Service
+public class UploadGarbageCollector implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadGarbageCollector.class);
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    public record Result(long scanned, long deleted, long reclaimedBytes) {
+    }
+
+    private final UploadStorage storage;
+    private final PostRepository postRepository;
+    private final StoredFileRepository storedFiles;
+    private final HotImageCache hotImages;
+    private final UploadLocks locks;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Duration gracePeriod;
+    private final int filesPerSecond;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Timer duration;
+    private Counter deleted;
+    private Counter reclaimed;
+
+    public UploadGarbageCollector(UploadStorage storage, PostRepository postRepository,
+                                  StoredFileRepository storedFiles, HotImageCache hotImages, UploadLocks locks,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${blog.uploads.gc.enabled:true}") boolean enabled,
+                                  @Value("${blog.uploads.gc.grace-period:PT24H}") Duration gracePeriod,
+                                  @Value("${blog.uploads.gc.files-per-second:500}") int filesPerSecond) {
+        this.storage = storage;
+        this.postRepository = postRepository;
+        this.storedFiles = storedFiles;
+        this.hotImages = hotImages;
+        this.locks = locks;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.gracePeriod = gracePeriod;
+        this.filesPerSecond = Math.max(1, filesPerSecond);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-gc");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @Scheduled(initialDelayString = "${blog.uploads.gc.initial-delay:PT10M}",
+            fixedDelayString = "${blog.uploads.gc.interval:PT6H}")
+    public void schedule() {
+        if (enabled && !running.get()) {
+            executor.execute(() -> {
+                try {
+                    collect();
+                } catch (Exception e) {
+                    logger.error("Orphaned upload sweep failed", e);
+                }
+            });
+        }
+    }
+
+    // Runs one sweep on the calling thread; returns null if one is already in progress
+    public Result collect() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        long started = System.nanoTime();
+        try {
+            Instant cutoff = Instant.now().minus(gracePeriod);
+            Set<String> referenced = referencedUrls();
+            Sweep sweep = new Sweep(referenced, cutoff.toEpochMilli());
+            sweepIncoming(sweep);
+            if (!sweep.stopped) {
+                storage.forEach(sweep::visit);
+            }
+            if (!sweep.stopped) {
+                storage.compact();
+            }
+
+            Result result = new Result(sweep.scanned, sweep.removed, sweep.reclaimedBytes);
+            logger.info("Orphaned upload sweep checked {} uploads against {} referenced, deleted {} ({} bytes) in {} ms",
+                    result.scanned(), referenced.size(), result.deleted(), result.reclaimedBytes(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return result;
+        } finally {
+            if (duration != null) {
+                duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            running.set(false);
+        }
+    }
+
+    private Set<String> referencedUrls() {
+        Set<String> urls = new HashSet<>();
+        readOnlyTransaction.executeWithoutResult(tx -> {
+            try (Stream<PostImageUrlsView> posts = postRepository.streamImageUrls()) {
+                posts.forEach(post -> {
+                    urls.add(post.getImageUrl());
+                    if (post.getThumbnailUrl() != null) {
+                        urls.add(post.getThumbnailUrl());
+                    }
+                    if (post.getMediumUrl() != null) {
+                        urls.add(post.getMediumUrl());
+                    }
+                });
+            }
+        });
+        return urls;
+    }
+
+    // Temporary files left behind by an upload or variant job that died half way
+    private void sweepIncoming(Sweep sweep) throws IOException {
+        Path incoming = storage.incomingDir();
+        if (!Files.isDirectory(incoming)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(incoming)) {
+            for (Path file : files) {
+                sweep.scanned++;
+                try {
+                    long size = Files.size(file);
+                    if (Files.getLastModifiedTime(file).toMillis() < sweep.cutoff && Files.deleteIfExists(file)) {
+                        sweep.deleted(size);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Finished and moved meanwhile
+                }
+                if (!sweep.pace()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private final class Sweep {
+        private final Set<String> referenced;
+        private final long cutoff;
+        private final long started = System.nanoTime();
+        private long scanned;
+        private long removed;
+        private long reclaimedBytes;
+        private boolean stopped;
+
+        Sweep(Set<String> referenced, long cutoff) {
+            this.referenced = referenced;
+            this.cutoff = cutoff;
+        }
+
+        boolean visit(String url, long length, long lastModified) throws IOException {
+            scanned++;
+            if (lastModified < cutoff && !referenced.contains(url)) {
+                delete(url);
+            }
+            return pace();
+        }
+
+        private void delete(String url) throws IOException {
+            UploadStorage.Upload upload;
+            boolean removedNow;
+            // Look again right before deleting, holding the lock an upload reusing the file takes to touch it
+            Lock lock = locks.forUrl(url);
+            lock.lock();
+            try {
+                upload = storage.find(url);
+                if (upload == null || upload.lastModified() >= cutoff) {
+                    return;
+                }
+                storedFiles.deleteByUrl(url);
+                removedNow = storage.delete(url);
+            } finally {
+                lock.unlock();
+            }
+            hotImages.evict(url);
+            if (removedNow) {
+                deleted(upload.length());
+                logger.debug("Deleted orphaned upload {}", url);
+            }
+        }
+
+        void deleted(long size) {
+            removed++;
+            reclaimedBytes += size;
+            if (deleted != null) {
+                deleted.increment();
+                reclaimed.increment(size);
+            }
+        }
+
+        // Sleeps as needed to stay at filesPerSecond; false once the collector is shutting down
+        boolean pace() {
+            long wait = started + scanned * NANOS_PER_SECOND / filesPerSecond - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopped = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        duration = Timer.builder("blog.uploads.gc.duration")
+                .description("Time taken by one orphaned upload sweep")
+                .register(registry);
+        deleted = Counter.builder("blog.uploads.gc.deleted")
+                .description("Orphaned upload files deleted")
+                .register(registry);
+        reclaimed = Counter.builder("blog.uploads.gc.reclaimed")
+                .baseUnit("bytes")
+                .description("Disk space freed by deleting orphaned uploads")
+                .register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.blog.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Makes reusing an existing upload and the orphan sweep deleting it mutually exclusive per URL.
+ * ImageUploadService checks and touches an upload while holding its lock, and UploadGarbageCollector
+ * checks and deletes under the same one, so a reuse either lands before the sweep looks (which then
+ * sees a fresh upload and keeps it) or after the delete (which then finds nothing and stores again).
+ *
+ * URLs hash onto a fixed number of stripes, so memory stays flat and unrelated uploads rarely wait.
+ */
+@Component
+public class UploadLocks {
+
+    private static final int STRIPES = 64;
+
+    private final Lock[] locks = new Lock[STRIPES];
+
+    public UploadLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Lock forUrl(String url) {
+        return locks[Math.floorMod(url.hashCode(), STRIPES)];
+    }
+}
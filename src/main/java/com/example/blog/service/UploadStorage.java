@@ -0,0 +1,63 @@
+package com.example.blog.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Where upload bytes live, addressed by their /uploads/... URL. ImageUploadService decides the URL and
+ * UploadGarbageCollector when it goes; a backend only stores, finds and deletes. Selected with
+ * blog.uploads.storage: "file" (default, one file per upload, FileUploadStorage) or "segments" (small
+ * uploads packed into memory-mapped segment files, SegmentUploadStorage).
+ */
+public interface UploadStorage {
+
+    /**
+     * A stored upload. Exactly one of file and content is set: file-backed uploads can be handed to
+     * sendfile, content is a read-only view of memory the backend already holds.
+     */
+    record Upload(long length, long lastModified, Path file, ByteBuffer content) {
+        public InputStream openStream() throws IOException {
+            if (file != null) {
+                return Files.newInputStream(file);
+            }
+            byte[] bytes = new byte[content.remaining()];
+            content.duplicate().get(bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        // Return false to stop the walk
+        boolean visit(String url, long length, long lastModified) throws IOException;
+    }
+
+    // Temporary files go here, on the same file system as the store, before put
+    Path incomingDir();
+
+    /**
+     * Stores the content of file under url, replacing nothing: if url is already stored the existing
+     * content is kept. The file may be moved; the caller deletes it afterwards if it still exists.
+     */
+    void put(String url, Path file) throws IOException;
+
+    // The upload stored under url, or null
+    Upload find(String url) throws IOException;
+
+    // Records the upload as used now, which keeps the orphan sweep away from it for its grace period
+    void touch(String url) throws IOException;
+
+    // True if something was deleted
+    boolean delete(String url) throws IOException;
+
+    // Every stored upload, for the orphan sweep; entries added or removed meanwhile may or may not show up
+    void forEach(Visitor visitor) throws IOException;
+
+    // Gives back space held by deleted uploads, if the backend needs to; called after each orphan sweep
+    default void compact() throws IOException {
+    }
+}
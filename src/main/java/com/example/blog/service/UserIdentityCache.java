@@ -0,0 +1,65 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.user.UserIdentity;
+import com.example.blog.repository.UserRepository;
+import com.example.blog.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of email -> UserIdentity for the lookups behind login, legacy-token
+ * authentication and email-exists checks.
+ *
+ * Only existing users are cached, so registering a new email needs no eviction. Anything that changes
+ * a cached field (name, email, password hash) or deletes the user must call evict with the old email.
+ */
+@Service
+public class UserIdentityCache implements MeterBinder {
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final LoadingCache<String, UserIdentity> identities;
+
+    public UserIdentityCache(UserRepository userRepository,
+                             @Value("${blog.cache.users.enabled:true}") boolean enabled,
+                             @Value("${blog.cache.users.max-size:10000}") long maxUsers,
+                             @Value("${blog.cache.users.ttl:PT10M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        // A null load (no such user) is not stored
+        this.identities = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(email -> userRepository.findByEmail(email).map(UserIdentity::of).orElse(null));
+    }
+
+    public Optional<UserIdentity> findByEmail(String email) {
+        if (!enabled) {
+            return userRepository.findByEmail(email).map(UserIdentity::of);
+        }
+        return Optional.ofNullable(identities.get(email));
+    }
+
+    public boolean exists(String email) {
+        return findByEmail(email).isPresent();
+    }
+
+    // Drops the entry once the current transaction commits, so a concurrent load cannot re-cache the old row
+    public void evict(String email) {
+        AfterCommit.run(() -> identities.invalidate(email));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, identities, "users.identity");
+    }
+}
@@ -3,43 +3,90 @@ package com.example.blog.service;
 import com.example.blog.dto.user.UserDto;
 import com.example.blog.dto.user.UserRequestDto;
 import com.example.blog.entities.User;
+import com.example.blog.repository.PostRepository;
 import com.example.blog.repository.UserRepository;
 import exception.GlobalExceptionHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final TokenRevocationService tokenRevocation;
+    private final UserIdentityCache identities;
+    private final PostCacheService postCache;
+    private final PostSearchService postSearch;
+    private final PostViewService postViews;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, PostRepository postRepository,
+                       TokenRevocationService tokenRevocation, UserIdentityCache identities,
+                       PostCacheService postCache, PostSearchService postSearch, PostViewService postViews) {
         this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.tokenRevocation = tokenRevocation;
+        this.identities = identities;
+        this.postCache = postCache;
+        this.postSearch = postSearch;
+        this.postViews = postViews;
     }
 
-    public UserDto updateUserProfile(String email, UserRequestDto userRequestDto) {
-        User user = userRepository.findByEmail(email)
+    @Transactional
+    public UserDto updateUserProfile(Long userId, UserRequestDto userRequestDto) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
 
+        String previousEmail = user.getEmail();
+        boolean nameChanged = userRequestDto.getName() != null && !userRequestDto.getName().equals(user.getName());
         if (userRequestDto.getName() != null) {
             user.setName(userRequestDto.getName());
         }
+        boolean emailChanged = userRequestDto.getEmail() != null && !userRequestDto.getEmail().equals(user.getEmail());
         if (userRequestDto.getEmail() != null) {
             user.setEmail(userRequestDto.getEmail());
         }
         User updatedUser = userRepository.save(user);
+        identities.evict(previousEmail);
+        postCache.evictAll();  // Posts and comments show their author's name and email
+
+        // ... and so do their ETags, which only follow post revisions
+        if (nameChanged || emailChanged) {
+            postRepository.incrementRevisionOfPostsShowingUser(userId);
+        }
+
+        // Tokens name the user by email, so the old ones must stop working
+        if (emailChanged) {
+            tokenRevocation.revokeTokens(updatedUser.getId());
+        }
 
         return new UserDto(updatedUser.getId(), updatedUser.getName(), updatedUser.getEmail(), updatedUser.getRole());
     }
 
-    public void deleteUserAccount(String email) {
-        User user=userRepository.findByEmail(email)
-                .orElseThrow(()-> new GlobalExceptionHandler.UserNotFoundException("User not found"));
+    // Also used by AdminService, so both ways of removing a user leave the posts they touched consistent
+    @Transactional
+    public void deleteUserAccount(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
 
+        // The cascade deletes their comments row by row and never adjusts the counters of the posts they were on
+        postRepository.removeCommentsOfUser(userId);
+        // Their posts go through the cascade too, so PostService.deletePost never sees them
+        List<Long> postIds = postRepository.findIdsByUserId(userId);
         userRepository.delete(user);
+        for (Long postId : postIds) {
+            postSearch.onPostDeleted(postId);
+            postViews.forget(postId);
+        }
+        tokenRevocation.userDeleted(user.getId());
+        identities.evict(user.getEmail());
+        postCache.evictAll();  // Their posts and comments went with them
     }
 
-    public UserDto getUserProfile(String email) {
-        User user = userRepository.findByEmail(email)
+    public UserDto getUserProfile(Long userId) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new GlobalExceptionHandler.UserNotFoundException("User not found"));
 
         return new UserDto(user.getId(), user.getName(), user.getEmail(), user.getRole());
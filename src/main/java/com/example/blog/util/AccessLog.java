@@ -0,0 +1,92 @@
+package com.example.blog.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous sink for access log entries. Request threads only hand an entry to a ring buffer;
+ * a single background thread formats it and writes it to the "blog.access" logger, so slow log
+ * output can never stall a request. When the ring is full the entry is dropped and counted.
+ */
+@Component
+public class AccessLog implements MeterBinder {
+
+    private static final Logger accessLogger = LoggerFactory.getLogger("blog.access");
+
+    public record Entry(Instant time, String method, String path, String query, int status,
+                        long durationMicros, String client, String user) {
+    }
+
+    private final RingBuffer<Entry> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AccessLog(@Value("${blog.access-log.buffer-size:8192}") int bufferSize) {
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.writer = new Thread(this::drainLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Never blocks
+    public void record(Entry entry) {
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        drain();
+    }
+
+    private boolean drain() {
+        boolean wrote = false;
+        Entry entry;
+        while ((entry = buffer.poll()) != null) {
+            write(entry);
+            wrote = true;
+        }
+        return wrote;
+    }
+
+    private static void write(Entry entry) {
+        accessLogger.info("time={} method={} path={} query={} status={} durationMicros={} client={} user={}",
+                entry.time(), entry.method(), entry.path(), entry.query() == null ? "-" : entry.query(),
+                entry.status(), entry.durationMicros(), entry.client(), entry.user());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("blog.access-log.pending", buffer, RingBuffer::size)
+                .description("Access log entries waiting to be written")
+                .register(registry);
+        Gauge.builder("blog.access-log.dropped", dropped, LongAdder::sum)
+                .description("Access log entries dropped because the buffer was full")
+                .register(registry);
+    }
+}
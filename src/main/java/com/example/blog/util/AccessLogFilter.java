@@ -0,0 +1,144 @@
+package com.example.blog.util;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records one access log entry per request: method, path, redacted query string, status, duration,
+ * client address and user id. Runs in the security chain ahead of JwtRequestFilter, so it also sees
+ * requests the rate limiter or authorization rejects, and the authenticated user is still in the
+ * security context when the response comes back.
+ *
+ * Successful requests are sampled at blog.access-log.sample-rate; errors are always recorded.
+ * Headers are never logged, and credential-looking query parameters are masked.
+ */
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SECRET_PARAMETERS = Set.of(
+            "token", "access_token", "refresh_token", "refreshtoken", "password", "secret", "code");
+    private static final Pattern PARAMETER = Pattern.compile("([^&=]+)=([^&]*)");
+
+    private final AccessLog accessLog;
+    private final boolean enabled;
+    private final double sampleRate;
+
+    public AccessLogFilter(AccessLog accessLog,
+                           @Value("${blog.access-log.enabled:true}") boolean enabled,
+                           @Value("${blog.access-log.sample-rate:1.0}") double sampleRate) {
+        this.accessLog = accessLog;
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Instant time = Instant.now();
+        long started = System.nanoTime();
+        boolean sampled = sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;  // If the chain throws
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            String user = userOf(SecurityContextHolder.getContext().getAuthentication());
+            if (request.isAsyncStarted()) {
+                // Streamed responses (e.g. the export) finish on another thread; log when they do
+                request.getAsyncContext().addListener(new CompletionListener(request, time, started, user, sampled));
+            } else if (sampled || status >= 500) {
+                record(request, time, started, status, user);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, Instant time, long started, int status, String user) {
+        long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+        accessLog.record(new AccessLog.Entry(time, request.getMethod(), request.getRequestURI(),
+                redact(request.getQueryString()), status, durationMicros, request.getRemoteAddr(), user));
+    }
+
+    private static String userOf(Authentication authentication) {
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            return "-";
+        }
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return String.valueOf(user.id());
+        }
+        return authentication.getName();
+    }
+
+    static String redact(String query) {
+        if (query == null) {
+            return null;
+        }
+        Matcher matcher = PARAMETER.matcher(query);
+        StringBuilder redacted = new StringBuilder(query.length());
+        while (matcher.find()) {
+            String value = SECRET_PARAMETERS.contains(matcher.group(1).toLowerCase()) ? "***" : "$2";
+            matcher.appendReplacement(redacted, "$1=" + value);
+        }
+        matcher.appendTail(redacted);
+        return redacted.toString();
+    }
+
+    private final class CompletionListener implements AsyncListener {
+        private final HttpServletRequest request;
+        private final Instant time;
+        private final long started;
+        private final String user;
+        private final boolean sampled;
+
+        CompletionListener(HttpServletRequest request, Instant time, long started, String user, boolean sampled) {
+            this.request = request;
+            this.time = time;
+            this.started = started;
+            this.user = user;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            int status = ((HttpServletResponse) event.getSuppliedResponse()).getStatus();
+            if (sampled || status >= 500) {
+                record(request, time, started, status, user);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.blog.util;
+
+import com.example.blog.entities.Role;
+
+import java.security.Principal;
+
+/**
+ * Principal of a request authenticated from token claims alone. getName() is the email, so
+ * Authentication.getName() means the same thing as with a loaded UserDetails.
+ */
+public record AuthenticatedUser(Long id, String email, String displayName, Role role) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.blog.util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the authenticated caller to an {@link AuthenticatedUser} controller parameter.
+ * Resolved from the SecurityContext by {@link CurrentUserArgumentResolver}; the token is not read again.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
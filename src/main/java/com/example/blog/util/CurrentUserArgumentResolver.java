@@ -0,0 +1,53 @@
+package com.example.blog.util;
+
+import com.example.blog.dto.user.UserIdentity;
+import com.example.blog.service.UserIdentityCache;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final UserIdentityCache identities;
+
+    public CurrentUserArgumentResolver(UserIdentityCache identities) {
+        this.identities = identities;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && AuthenticatedUser.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public AuthenticatedUser resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                             NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            // Handled by Spring Security like any other unauthenticated request
+            throw new AuthenticationCredentialsNotFoundException("No authenticated user");
+        }
+
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof AuthenticatedUser user) {
+            return user;
+        }
+        if (principal instanceof UserDetails details) {
+            // Tokens issued before uid was a claim are authenticated with a loaded UserDetails, which has no id
+            UserIdentity user = identities.findByEmail(details.getUsername())
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + details.getUsername()));
+            return new AuthenticatedUser(user.id(), user.email(), user.name(), user.role());
+        }
+        throw new AuthenticationCredentialsNotFoundException("Unsupported principal");
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.blog.util;
+
+import exception.GlobalExceptionHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes keyset positions into opaque continuation tokens, so clients never
+ * depend on the fact that the feed is ordered by post id.
+ */
+public final class CursorCodec {
+
+    private static final String PREFIX = "v1:";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(long lastSeenId) {
+        byte[] raw = (PREFIX + lastSeenId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static long decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new GlobalExceptionHandler.InvalidCursorException("Invalid cursor");
+            }
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // Covers both bad Base64 and NumberFormatException
+            throw new GlobalExceptionHandler.InvalidCursorException("Invalid cursor");
+        }
+    }
+}
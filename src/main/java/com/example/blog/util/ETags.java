@@ -0,0 +1,49 @@
+package com.example.blog.util;
+
+/**
+ * Builds entity tags from ids and version numbers rather than from serialized bodies,
+ * so a conditional GET can be answered before anything is loaded or mapped.
+ */
+public final class ETags {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ETags() {
+    }
+
+    public static String of(String kind, long... values) {
+        return new Builder(kind).add(values).build();
+    }
+
+    public static Builder builder(String kind) {
+        return new Builder(kind);
+    }
+
+    public static final class Builder {
+        private final String kind;
+        private long hash = FNV_OFFSET;
+
+        private Builder(String kind) {
+            this.kind = kind;
+        }
+
+        public Builder add(long... values) {
+            for (long value : values) {
+                for (int shift = 0; shift < 64; shift += 8) {
+                    hash ^= (value >>> shift) & 0xff;
+                    hash *= FNV_PRIME;
+                }
+            }
+            return this;
+        }
+
+        public Builder add(String value) {
+            return add(value == null ? 0 : value.hashCode());
+        }
+
+        public String build() {
+            return "\"" + kind + "-" + Long.toHexString(hash) + "\"";
+        }
+    }
+}
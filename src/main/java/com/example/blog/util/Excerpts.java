@@ -0,0 +1,34 @@
+package com.example.blog.util;
+
+/**
+ * Builds the short plain-text teaser stored next to a post body, so list views never need the body.
+ */
+public final class Excerpts {
+
+    public static final int MAX_LENGTH = 300;
+
+    private static final String ELLIPSIS = "…";
+
+    private Excerpts() {
+    }
+
+    // Collapses whitespace and cuts at a word boundary when the body is too long
+    public static String of(String body) {
+        if (body == null) {
+            return null;
+        }
+        String text = body.strip().replaceAll("\\s+", " ");
+        if (text.length() <= MAX_LENGTH) {
+            return text;
+        }
+
+        int cut = MAX_LENGTH - ELLIPSIS.length();
+        int space = text.lastIndexOf(' ', cut);
+        if (space > cut / 2) {
+            cut = space;
+        } else if (Character.isHighSurrogate(text.charAt(cut - 1))) {
+            cut--;  // Never split a surrogate pair
+        }
+        return text.substring(0, cut).stripTrailing() + ELLIPSIS;
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.blog.util;
 
+import com.example.blog.entities.Role;
+import com.example.blog.service.SessionRevocationService;
+import com.example.blog.service.TokenRevocationService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -13,46 +19,71 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocation;
+    private final SessionRevocationService sessionRevocation;
+    private final boolean stateless;
 
     // Use constructor injection with @Lazy on the UserDetailsService to prevent immediate bean creation
-    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService,
+                            TokenRevocationService tokenRevocation, SessionRevocationService sessionRevocation,
+                            @Value("${blog.auth.stateless:true}") boolean stateless) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenRevocation = tokenRevocation;
+        this.sessionRevocation = sessionRevocation;
+        this.stateless = stateless;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
 
-        System.out.println(request.getRequestURI());
         String authorizationHeader = request.getHeader("Authorization");
-        System.out.println(authorizationHeader);
 
-        String username = null;
-        String jwt = null;
-
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            System.out.println(jwt);
-            username = jwtUtil.extractUsername(jwt);
-            System.out.println(username);
-        }
-
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
-                UsernamePasswordAuthenticationToken authenticationToken =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            try {
+                // Signature and expiry are checked once here; the claims come from the cache on repeat requests
+                VerifiedToken token = jwtUtil.verify(authorizationHeader.substring(7));
+                UsernamePasswordAuthenticationToken authenticationToken = isRevoked(token) ? null
+                        : stateless && token.isStateless() ? fromClaims(token) : fromUserDetails(token);
+                if (authenticationToken != null) {
+                    authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                }
+            } catch (JwtException e) {
+                // Leave the request unauthenticated; protected endpoints answer 401/403
             }
         }
         chain.doFilter(request, response);
     }
+
+    // The session was ended (logout, refresh token reuse) after this access token was issued
+    private boolean isRevoked(VerifiedToken token) {
+        return token.sessionId() != null && sessionRevocation.isRevoked(token.sessionId());
+    }
+
+    // No query: identity and role come from the token, revocation from the in-memory version cache
+    private UsernamePasswordAuthenticationToken fromClaims(VerifiedToken token) {
+        if (!tokenRevocation.isCurrent(token)) {
+            return null;
+        }
+        Role role = Role.valueOf(token.role());
+        AuthenticatedUser principal = new AuthenticatedUser(token.userId(), token.email(), token.name(), role);
+        return new UsernamePasswordAuthenticationToken(principal, null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + role.name())));
+    }
+
+    // Tokens issued before uid/ver were added, or stateless mode switched off: load the user
+    private UsernamePasswordAuthenticationToken fromUserDetails(VerifiedToken token) {
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(token.email());
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
 }
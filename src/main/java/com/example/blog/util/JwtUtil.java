@@ -1,59 +1,168 @@
 package com.example.blog.util;
 
-import com.example.blog.entities.Role;
+import com.example.blog.dto.user.UserIdentity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Component
-public class JwtUtil {
+public class JwtUtil implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
     private final String SECRET_KEY = "your-secure-predefined-new-key-here";
-    private final long JWT_EXPIRATION = 86400000;
 
-    public String extractUsername(String token) {
-        logger.info("Extracted Username: {}", extractClaim(token, Claims::getSubject)); // Should print the email
-        return extractClaim(token, Claims::getSubject);
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(SECRET_KEY.getBytes())
+            .build();
+
+    // Tokens that already passed verification, keyed by the SHA-256 of the token and dropped at their exp
+    private final Cache<TokenDigest, VerifiedToken> verifiedTokens;
+
+    // Kept short: a refresh token (see RefreshTokenService) renews it, and revocation only has to outlive it
+    private final Duration accessTokenTtl;
+
+    public JwtUtil(@Value("${blog.jwt.cache.max-size:10000}") long maxCachedTokens,
+                   @Value("${blog.jwt.access-ttl:PT15M}") Duration accessTokenTtl) {
+        this.accessTokenTtl = accessTokenTtl;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxCachedTokens)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+    }
+
+    // The full 256-bit digest; a collision here would mean skipping a signature check
+    private record TokenDigest(long a, long b, long c, long d) {
+        // MessageDigest lookup costs more than hashing a token, so each thread keeps its own instance
+        private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        });
+
+        static TokenDigest of(String token) {
+            byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            return new TokenDigest(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+        }
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    private static final class UntilTokenExpiry implements Expiry<TokenDigest, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(TokenDigest key, VerifiedToken token, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * Checks the signature and expiry of a token and returns its claims. Repeat calls with the same
+     * token are answered from the cache without parsing or verifying it again.
+     *
+     * @throws JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        TokenDigest digest = TokenDigest.of(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(Instant.now())) {
+            return cached;
+        }
+
+        VerifiedToken verified = parse(token);
+        if (verified.expiresAt() != null) {
+            verifiedTokens.put(digest, verified);
+        }
+        return verified;
     }
 
-    private Claims extractAllClaims(String token) {
+    private VerifiedToken parse(String token) {
+        Claims claims;
         try {
-            return Jwts.parser()
-                    .setSigningKey(SECRET_KEY.getBytes()) // Convert the key to bytes
-                    .parseClaimsJws(token)
-                    .getBody();
+            claims = parser.parseClaimsJws(token).getBody();
         } catch (Exception e) {
-            logger.error("Invalid JWT token: {}", e.getMessage());
+            logger.debug("Invalid JWT token: {}", e.getMessage());
             throw new JwtException("Invalid JWT token: " + e.getMessage(), e);
         }
+
+        Date issuedAt = claims.getIssuedAt();
+        Date expiration = claims.getExpiration();
+        Object role = claims.get("role");
+        String sessionId = claims.get("sid", String.class);
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("name", String.class),
+                role == null ? null : role.toString(),
+                claims.get("uid", Long.class),
+                claims.get("ver", Long.class),
+                sessionId == null ? null : parseSessionId(sessionId),
+                issuedAt == null ? null : issuedAt.toInstant(),
+                expiration == null ? null : expiration.toInstant());
+    }
+
+    private static UUID parseSessionId(String sessionId) {
+        try {
+            return UUID.fromString(sessionId);
+        } catch (IllegalArgumentException e) {
+            throw new JwtException("Invalid JWT token: malformed sid", e);
+        }
+    }
+
+    public Duration getAccessTokenTtl() {
+        return accessTokenTtl;
+    }
+
+    public String extractUsername(String token) {
+        return verify(token).email();
     }
 
 
-    public String generateToken(String name, String email, Role role) {
+    // uid, role and ver are enough to authenticate a request without loading the user
+    public String generateToken(UserIdentity user, long tokenVersion, UUID sessionId) {
         try {
             Map<String, Object> claims = new HashMap<>();
-            claims.put("name", name);
-            claims.put("role", role); // Ensure role is a string
-            return createToken(claims, email);
+            claims.put("name", user.name());
+            claims.put("role", user.role()); // Ensure role is a string
+            claims.put("uid", user.id());
+            claims.put("ver", tokenVersion);
+            claims.put("sid", sessionId.toString());
+            return createToken(claims, user.email());
         } catch (Exception e) {
-            e.printStackTrace(); // Log the error for debugging
-            logger.error("Error generating JWT token: {}", e.getMessage());
+            logger.error("Error generating JWT token: {}", e.getMessage(), e);
             throw new RuntimeException("Token generation failed: " + e.getMessage());
         }
     }
@@ -64,24 +173,13 @@ public class JwtUtil {
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(new Date().getTime() + JWT_EXPIRATION))
+                .setExpiration(new Date(System.currentTimeMillis() + accessTokenTtl.toMillis()))
                 .signWith(SignatureAlgorithm.HS256, SECRET_KEY.getBytes())
                 .compact();
     }
 
-    public Boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        Boolean tokenValid = extractedUsername.equals(username) && !isTokenExpired(token);
-        logger.info("Token Validation - Extracted Username: {}", extractedUsername);
-        logger.info("Token Validity: {}", tokenValid);
-        return tokenValid;
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractAllClaims(token).getExpiration();
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verifiedTokens, "jwt.verified");
     }
 }
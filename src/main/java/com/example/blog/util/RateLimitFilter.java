@@ -0,0 +1,184 @@
+package com.example.blog.util;
+
+import com.example.blog.dto.CommonApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client throttling, applied right after JwtRequestFilter so signed-in clients are limited by user
+ * and everyone else by IP. Login and registration are always limited by IP, since that is what an
+ * attacker guessing passwords cannot easily change.
+ *
+ * Each bucket is a single AtomicLong holding the GCRA "theoretical arrival time": a request is allowed
+ * if pushing that time forward by one interval keeps it within the burst allowance, which is one CAS
+ * and no lock. Buckets live in a size-bounded Caffeine cache; one idle long enough to have refilled is
+ * indistinguishable from a new one, so dropping it loses nothing.
+ *
+ * Behind a reverse proxy set server.forward-headers-strategy, otherwise every client shares the proxy's IP.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    enum Group { AUTH, WRITES, READS }
+
+    private record BucketKey(Group group, Object client) {
+    }
+
+    // Refills at limit per minute and holds at most burst requests
+    private record Limit(long intervalNanos, long burstNanos) {
+        static Limit of(int perMinute, int burst) {
+            long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            return new Limit(interval, interval * Math.max(1, burst));
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<Group, Limit> limits = new EnumMap<>(Group.class);
+    private final Cache<BucketKey, AtomicLong> buckets;
+    private final ObjectMapper objectMapper;
+    private final LongSupplier nanoTime;
+    private final Map<Group, Counter> rejected = new EnumMap<>(Group.class);
+
+    @Autowired
+    public RateLimitFilter(ObjectMapper objectMapper,
+                           @Value("${blog.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${blog.rate-limit.max-clients:100000}") long maxClients,
+                           @Value("${blog.rate-limit.auth.per-minute:10}") int authPerMinute,
+                           @Value("${blog.rate-limit.auth.burst:5}") int authBurst,
+                           @Value("${blog.rate-limit.writes.per-minute:60}") int writesPerMinute,
+                           @Value("${blog.rate-limit.writes.burst:20}") int writesBurst,
+                           @Value("${blog.rate-limit.reads.per-minute:600}") int readsPerMinute,
+                           @Value("${blog.rate-limit.reads.burst:100}") int readsBurst) {
+        this(objectMapper, enabled, maxClients, authPerMinute, authBurst, writesPerMinute, writesBurst,
+                readsPerMinute, readsBurst, System::nanoTime);
+    }
+
+    // nanoTime stands in for System.nanoTime, so tests can move time by hand
+    RateLimitFilter(ObjectMapper objectMapper, boolean enabled, long maxClients, int authPerMinute, int authBurst,
+                    int writesPerMinute, int writesBurst, int readsPerMinute, int readsBurst, LongSupplier nanoTime) {
+        this.objectMapper = objectMapper;
+        this.nanoTime = nanoTime;
+        this.enabled = enabled;
+        limits.put(Group.AUTH, Limit.of(authPerMinute, authBurst));
+        limits.put(Group.WRITES, Limit.of(writesPerMinute, writesBurst));
+        limits.put(Group.READS, Limit.of(readsPerMinute, readsBurst));
+
+        long longestRefill = limits.values().stream().mapToLong(Limit::burstNanos).max().orElseThrow();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(longestRefill))
+                .ticker(nanoTime::getAsLong)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Group group = groupOf(request);
+        long waitNanos = acquire(new BucketKey(group, clientOf(request, group)), limits.get(group));
+        if (waitNanos > 0) {
+            reject(response, group, waitNanos);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static Group groupOf(HttpServletRequest request) {
+        // The servlet path is empty under some servlet mappings, so match on the URI instead
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/auth/") || path.equals("/admin/register")) {
+            return Group.AUTH;
+        }
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) ? Group.READS : Group.WRITES;
+    }
+
+    private static Object clientOf(HttpServletRequest request, Group group) {
+        if (group != Group.AUTH) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+                return user.id();
+            }
+            if (authentication != null && authentication.isAuthenticated()) {
+                return authentication.getName();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    // Returns 0 if the request may proceed, otherwise how long until it would have been allowed
+    private long acquire(BucketKey key, Limit limit) {
+        AtomicLong arrival = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long current = arrival.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = base + limit.intervalNanos();
+            long excess = next - now - limit.burstNanos();
+            if (excess > 0) {
+                return excess;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, Group group, long waitNanos) throws IOException {
+        Counter counter = rejected.get(group);
+        if (counter != null) {
+            counter.increment();
+        }
+        long retryAfterSeconds = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new CommonApiResponse<>(
+                HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, please retry later", null));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, buckets, "rateLimitBuckets");
+        for (Group group : Group.values()) {
+            rejected.put(group, Counter.builder("blog.ratelimit.rejected")
+                    .tag("group", group.name().toLowerCase())
+                    .description("Requests refused with 429")
+                    .register(registry));
+        }
+    }
+}
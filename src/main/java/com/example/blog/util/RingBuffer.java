@@ -0,0 +1,66 @@
+package com.example.blog.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer, single-consumer queue on a power-of-two ring. offer never blocks: when the
+ * ring is full it returns false and the caller decides what to drop.
+ *
+ * Each slot carries a sequence number telling producers and the consumer whose turn it is, so a
+ * producer claims a slot with one CAS on the tail and no lock is ever taken.
+ */
+public final class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;  // Only written by the consumer
+
+    public RingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) * 2 - 1);
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, item);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;  // Full: the consumer has not freed this slot yet
+            }
+            // Otherwise another producer claimed the slot first; retry with the new tail
+        }
+    }
+
+    // Consumer side only; null if nothing is ready
+    public T poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T item = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return item;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
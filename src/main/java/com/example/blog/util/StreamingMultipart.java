@@ -0,0 +1,63 @@
+package com.example.blog.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Reads a multipart request part by part straight off the socket with commons-fileupload's streaming
+ * API, so no part is buffered in memory or in a container temp file first. Servlet multipart parsing
+ * (spring.servlet.multipart.enabled) must be off, or the container consumes the body before this runs.
+ *
+ * Only the servlet-independent part of commons-fileupload 1.x is used: its servlet adapter is built
+ * on javax.servlet, so the Jakarta request is adapted here instead.
+ */
+public final class StreamingMultipart {
+
+    private StreamingMultipart() {
+    }
+
+    public static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(FileUploadBase.MULTIPART);
+    }
+
+    public static FileItemIterator parts(HttpServletRequest request) throws IOException, FileUploadException {
+        return new FileUpload().getItemIterator(new JakartaRequestContext(request));
+    }
+
+    private record JakartaRequestContext(HttpServletRequest request) implements UploadContext {
+        @Override
+        public String getCharacterEncoding() {
+            return request.getCharacterEncoding();
+        }
+
+        @Override
+        public String getContentType() {
+            return request.getContentType();
+        }
+
+        @Override
+        @Deprecated
+        public int getContentLength() {
+            return request.getContentLength();
+        }
+
+        @Override
+        public long contentLength() {
+            return request.getContentLengthLong();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return request.getInputStream();
+        }
+    }
+}
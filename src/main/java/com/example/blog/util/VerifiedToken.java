@@ -0,0 +1,23 @@
+package com.example.blog.util;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The claims of a JWT whose signature and expiry have already been checked. Immutable, so one
+ * instance can be cached and shared by every request that presents the same token.
+ *
+ * userId and tokenVersion are null for tokens issued before they were added to the claims, and
+ * sessionId for tokens issued before refresh tokens.
+ */
+public record VerifiedToken(String email, String name, String role, Long userId, Long tokenVersion,
+                            UUID sessionId, Instant issuedAt, Instant expiresAt) {
+
+    public boolean isStateless() {
+        return userId != null && tokenVersion != null && role != null;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -100,5 +100,50 @@ public class GlobalExceptionHandler {
         }
     }
 
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public static class InvalidCursorException extends RuntimeException {
+        public InvalidCursorException(String message) {
+            super(message);
+        }
+    }
+
+    // Unknown, expired, reused or revoked refresh token; the client has to log in again
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    public static class InvalidRefreshTokenException extends RuntimeException {
+        public InvalidRefreshTokenException(String message) {
+            super(message);
+        }
+    }
+
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public static class UploadTooLargeException extends RuntimeException {
+        public UploadTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    @ResponseStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+    public static class UnsupportedUploadTypeException extends RuntimeException {
+        public UnsupportedUploadTypeException(String message) {
+            super(message);
+        }
+    }
+
+    // Not multipart, malformed, or missing a required part
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public static class InvalidUploadException extends RuntimeException {
+        public InvalidUploadException(String message) {
+            super(message);
+        }
+    }
+
+    // A bounded resource (such as the password hashing pool) is full; the client should retry shortly
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public static class ServiceOverloadedException extends RuntimeException {
+        public ServiceOverloadedException(String message) {
+            super(message);
+        }
+    }
+
 
 }
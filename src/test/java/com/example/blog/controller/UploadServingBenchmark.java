@@ -0,0 +1,149 @@
+package com.example.blog.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of UploadController against the generic resource handler it replaced, over real sockets.
+ * Not part of the normal build; run with
+ *
+ *     mvn test -Dtest=UploadServingBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"blog.rate-limit.enabled=false", "blog.access-log.enabled=false"})
+@Import(UploadServingBenchmark.ResourceHandlerConfig.class)
+class UploadServingBenchmark {
+
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+    private static final int CLIENTS = 8;
+    private static final int REQUESTS = 400;
+    private static final int WARMUP_REQUESTS = 50;
+
+    private static final Path DIRECTORY = Paths.get(System.getProperty("user.dir"), "uploads", "benchmark");
+    private static final String FILE_NAME = "image.jpg";
+
+    // The handler WebConfig used to register for /uploads/**, under a path of its own
+    @TestConfiguration
+    static class ResourceHandlerConfig implements WebMvcConfigurer {
+        @Override
+        public void addResourceHandlers(ResourceHandlerRegistry registry) {
+            registry.addResourceHandler("/resource-handler/**")
+                    .addResourceLocations("file:" + System.getProperty("user.dir") + "/uploads/");
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private String token;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(DIRECTORY);
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Files.write(DIRECTORY.resolve(FILE_NAME), content);
+
+        // Only /uploads/** is public, so the resource handler is reached with a token
+        post("/auth/register", "{\"name\":\"bench\",\"email\":\"bench@example.com\",\"password\":\"benchmark\","
+                + "\"confirmPassword\":\"benchmark\",\"role\":\"USER\"}");
+        String login = post("/auth/login", "{\"email\":\"bench@example.com\",\"password\":\"benchmark\"}");
+        token = objectMapper.readTree(login).get("data").get("token").asText();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(DIRECTORY.resolve(FILE_NAME));
+        Files.deleteIfExists(DIRECTORY);
+    }
+
+    @Test
+    void compareThroughput() throws Exception {
+        String path = "/benchmark/" + FILE_NAME;
+        double resourceHandler = measure("/resource-handler" + path);
+        double uploadController = measure("/uploads" + path);
+        // Once more, so neither side benefits from running second
+        resourceHandler = Math.max(resourceHandler, measure("/resource-handler" + path));
+        uploadController = Math.max(uploadController, measure("/uploads" + path));
+
+        System.out.printf("Resource handler:  %8.1f MB/s%n", resourceHandler);
+        System.out.printf("UploadController:  %8.1f MB/s%n", uploadController);
+    }
+
+    // Megabytes per second over CLIENTS concurrent connections
+    private double measure(String path) throws Exception {
+        run(path, WARMUP_REQUESTS);
+        long started = System.nanoTime();
+        long bytes = run(path, REQUESTS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return bytes / seconds / (1024 * 1024);
+    }
+
+    private long run(String path, int requests) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(pool.submit(() -> {
+                    HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                    assertThat(response.statusCode()).isEqualTo(200);
+                    try (InputStream body = response.body()) {
+                        return body.transferTo(OutputStream.nullOutputStream());
+                    }
+                }));
+            }
+            long bytes = 0;
+            for (Future<Long> result : results) {
+                bytes += result.get();
+            }
+            assertThat(bytes).isEqualTo((long) requests * FILE_SIZE);
+            return bytes;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private String post(String path, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
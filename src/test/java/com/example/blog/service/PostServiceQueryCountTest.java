@@ -0,0 +1,190 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.CursorPageDto;
+import com.example.blog.dto.post.PostResponseDto;
+import com.example.blog.dto.post.PostSummaryDto;
+import com.example.blog.entities.Comment;
+import com.example.blog.entities.Post;
+import com.example.blog.entities.Role;
+import com.example.blog.entities.Status;
+import com.example.blog.entities.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A zero TTL keeps the post cache from answering, so every call measures the database path
+@DataJpaTest(properties = "blog.cache.posts.ttl=PT0S")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostService.class, PostCacheService.class, PostSearchService.class, PostViewService.class,
+        ImageUploadService.class, FileUploadStorage.class, UploadLocks.class, ImageVariantService.class})
+class PostServiceQueryCountTest {
+
+    private static final int POSTS = 12;
+    private static final int COMMENTS_PER_POST = 3;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PostService postService;
+
+    private Statistics statistics;
+
+    private List<User> users;
+
+    @BeforeEach
+    void seed() {
+        users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User user = new User();
+            user.setName("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setPassword("secret");
+            user.setRole(Role.USER);
+            entityManager.persist(user);
+            users.add(user);
+        }
+
+        for (int i = 0; i < POSTS; i++) {
+            Post post = new Post();
+            post.setTitle("title " + i);
+            post.setBody("body " + i);
+            post.setExcerpt("body " + i);
+            post.setStatus(Status.PUBLISHED);
+            post.setUser(users.get(i % users.size()));
+            post.setCommentCount(COMMENTS_PER_POST);
+            entityManager.persist(post);
+
+            for (int j = 0; j < COMMENTS_PER_POST; j++) {
+                Comment comment = new Comment();
+                comment.setBody("comment " + j);
+                comment.setCreatedAt(LocalDateTime.now().plusSeconds(j));
+                comment.setPost(post);
+                comment.setUser(users.get((i + j + 1) % users.size()));
+                entityManager.persist(comment);
+            }
+        }
+
+        // Start every test from an empty persistence context so each lookup has to hit the database
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void feedPageIsBuiltWithTwoStatements() {
+        CursorPageDto<PostResponseDto> page = postService.getFeed(null, 10, null, false, null);
+
+        assertThat(page.getItems()).hasSize(10);
+        assertThat(page.getItems()).allSatisfy(post -> {
+            assertThat(post.getUser().getName()).isNotNull();
+            assertThat(post.getComment()).hasSize(COMMENTS_PER_POST)
+                    .allSatisfy(comment -> assertThat(comment.getUser().getName()).isNotNull());
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void statementCountDoesNotDependOnPageSize() {
+        postService.getFeed(null, 2, null, false, null);
+        long smallPage = statistics.getPrepareStatementCount();
+
+        entityManager.clear();
+        statistics.clear();
+
+        postService.getFeed(null, POSTS, null, false, null);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(smallPage);
+    }
+
+    @Test
+    void allPostsAreBuiltWithTwoStatements() {
+        List<PostResponseDto> posts = postService.getAllPosts(false, null);
+
+        assertThat(posts).hasSize(POSTS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void summaryPageCarriesCountAndLatestCommentsInTwoStatements() {
+        CursorPageDto<PostResponseDto> page = postService.getFeed(null, 10, null, true, 2);
+
+        assertThat(page.getItems()).hasSize(10);
+        assertThat(page.getItems()).allSatisfy(post -> {
+            assertThat(post.getCommentCount()).isEqualTo(COMMENTS_PER_POST);
+            assertThat(post.getComment()).extracting("body").containsExactly("comment 1", "comment 2");
+            assertThat(post.getComment()).allSatisfy(comment -> assertThat(comment.getUser().getName()).isNotNull());
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void listViewsServeExcerptsAndOnlyTheSinglePostReadsTheBody() {
+        CursorPageDto<PostResponseDto> page = postService.getFeed(null, 10, null, true, 0);
+
+        assertThat(page.getItems()).allSatisfy(post -> {
+            assertThat(post.getBody()).isNull();
+            assertThat(post.getExcerpt()).startsWith("body ");
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        Long postId = page.getItems().get(0).getId();
+        PostResponseDto post = postService.getPostById(postId);
+        assertThat(post.getBody()).isEqualTo(post.getExcerpt());
+    }
+
+    @Test
+    void authorPagesAreProjectedAndWalkTheWholeList() {
+        // users[0] wrote every fourth post
+        Long authorId = users.get(0).getId();
+        CursorPageDto<PostSummaryDto> first = postService.getPostsByUser(authorId, null, null, 2);
+        assertThat(first.getItems()).hasSize(2);
+        assertThat(first.isHasMore()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        CursorPageDto<PostSummaryDto> second = postService.getPostsByUser(authorId, Status.PUBLISHED,
+                first.getNextCursor(), 2);
+        assertThat(second.getItems()).hasSize(1);
+        assertThat(second.isHasMore()).isFalse();
+        assertThat(second.getItems().get(0).getId()).isLessThan(first.getItems().get(1).getId());
+    }
+
+    @Test
+    void legacyAuthorListsLoadBodiesInTheSameStatement() {
+        Long authorId = users.get(0).getId();
+        List<Post> posts = postService.getPostsByUser(authorId);
+
+        // What serializing the response touches
+        assertThat(posts).hasSize(POSTS / users.size());
+        assertThat(posts).allSatisfy(post -> {
+            assertThat(post.getBody()).startsWith("body ");
+            assertThat(post.getUser().getName()).isEqualTo("user0");
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        entityManager.clear();
+        statistics.clear();
+
+        List<Post> published = postService.getPostsByStatus(authorId, Status.PUBLISHED);
+        assertThat(published).hasSize(POSTS / users.size());
+        assertThat(published).allSatisfy(post -> assertThat(post.getBody()).startsWith("body "));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.blog.service;
+
+import com.example.blog.entities.Post;
+import com.example.blog.entities.PostViewCount;
+import com.example.blog.entities.Role;
+import com.example.blog.entities.Status;
+import com.example.blog.entities.User;
+import com.example.blog.repository.PostRepository;
+import com.example.blog.repository.PostViewCountRepository;
+import com.example.blog.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the real upsert against the H2 MODE=MySQL test database. Deletes publish after commit, so every
+// call commits for real instead of rolling back
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PostViewServiceTest {
+
+    private static final Duration HALF_LIFE = Duration.ofHours(1);
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostViewCountRepository viewCounts;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User author;
+    private List<Long> postIds;
+
+    @BeforeEach
+    void seed() {
+        author = new User();
+        author.setName("author");
+        author.setEmail("author@example.com");
+        author.setPassword("secret");
+        author.setRole(Role.USER);
+        userRepository.save(author);
+
+        postIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Post post = new Post();
+            post.setTitle("title " + i);
+            post.setBody("body " + i);
+            post.setStatus(Status.PUBLISHED);
+            post.setUser(author);
+            postIds.add(postRepository.save(post).getId());
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        viewCounts.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteById(author.getId());
+    }
+
+    private PostViewService views(int idleFlushes) {
+        return new PostViewService(jdbcTemplate, viewCounts, HALF_LIFE, 10, idleFlushes, now::get);
+    }
+
+    private long storedViews(Long postId) {
+        return viewCounts.findById(postId).map(PostViewCount::getViews).orElse(0L);
+    }
+
+    private void advance(long amount, TimeUnit unit) {
+        now.addAndGet(unit.toNanos(amount));
+    }
+
+    @Test
+    void flushAddsDeltasToTheStoredTotals() {
+        PostViewService views = views(60);
+        Long postId = postIds.get(0);
+        for (int i = 0; i < 3; i++) {
+            views.recordView(postId);
+        }
+        assertThat(views.getViewCount(postId)).isEqualTo(3);
+
+        views.flush();
+        views.recordView(postId);
+        views.flush();
+
+        assertThat(storedViews(postId)).isEqualTo(4);
+        assertThat(views.getViewCount(postId)).isEqualTo(4);
+    }
+
+    @Test
+    void viewAfterRetirementLandsOnAFreshCounter() {
+        PostViewService views = views(1);
+        Long postId = postIds.get(0);
+        views.recordView(postId);
+        views.flush();
+        views.flush();  // Idle once: retired and out of the map
+
+        views.recordView(postId);
+        assertThat(views.getViewCount(postId)).isEqualTo(2);
+        views.flush();
+        views.flush();
+
+        assertThat(storedViews(postId)).isEqualTo(2);
+    }
+
+    @Test
+    void viewLandingOnARetiredCounterIsMovedToALiveOne() {
+        PostViewService views = views(1);
+        Long postId = postIds.get(0);
+        // A request looks its counter up, then stalls while flushes retire the counter and finish with it
+        PostViewService.Counter stale = views.counterFor(postId);
+        views.flush();
+        views.flush();
+
+        assertThat(views.addTo(postId, stale)).isFalse();
+        views.recordView(postId);  // What recordView's loop does next
+        views.flush();
+
+        assertThat(storedViews(postId)).isEqualTo(1);
+    }
+
+    @Test
+    void viewLandingJustBeforeRetirementIsSentByTheNextFlush() {
+        PostViewService views = views(1);
+        Long postId = postIds.get(0);
+        PostViewService.Counter counter = views.counterFor(postId);
+        views.flush();  // Idle: retired, but its views still get one more run
+
+        // The increment happened before the flag was visible, so the request counts it as done
+        counter.views.increment();
+        views.flush();
+
+        assertThat(storedViews(postId)).isEqualTo(1);
+    }
+
+    @Test
+    void viewsRacingRetirementAreNeverLost() throws Exception {
+        // With idleFlushes 1 nearly every flush retires counters that the recording threads are hitting
+        PostViewService views = views(1);
+        AtomicBoolean recording = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<long[]>> recorders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            recorders.add(executor.submit(() -> {
+                long[] recorded = new long[postIds.size()];
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (recording.get()) {
+                    int post = random.nextInt(postIds.size());
+                    views.recordView(postIds.get(post));
+                    recorded[post]++;
+                    if (random.nextInt(100) == 0) {
+                        Thread.sleep(1);  // Leave posts idle now and then so they retire
+                    }
+                }
+                return recorded;
+            }));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        while (System.nanoTime() < deadline) {
+            views.flush();
+        }
+        recording.set(false);
+        long[] expected = new long[postIds.size()];
+        for (Future<long[]> recorder : recorders) {
+            long[] recorded = recorder.get(5, TimeUnit.SECONDS);
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] += recorded[i];
+            }
+        }
+        executor.shutdown();
+
+        // One run sends the live counters, the next whatever reached the counters it had just retired
+        views.flush();
+        views.flush();
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(storedViews(postIds.get(i))).as("post %d", i).isEqualTo(expected[i]);
+        }
+    }
+
+    @Test
+    void forgetDropsPendingViewsAndTheStoredTotal() {
+        PostViewService views = views(60);
+        Long postId = postIds.get(0);
+        views.recordView(postId);
+        views.flush();
+        views.recordView(postId);
+
+        // A delete that commits before the flush gets to the pending view
+        postRepository.deleteById(postId);
+        views.forget(postId);
+        views.recordView(postId);  // A request that read the post just before it went
+        views.flush();
+
+        assertThat(viewCounts.findById(postId)).isEmpty();
+        assertThat(views.getViewCount(postId)).isZero();
+    }
+
+    @Test
+    void upsertSkipsAPostDeletedBeforeItsForgetRuns() {
+        PostViewService views = views(60);
+        Long postId = postIds.get(0);
+        views.recordView(postId);
+
+        // The flush lands between the post row going and forget's after-commit step
+        postRepository.deleteById(postId);
+        views.flush();
+
+        assertThat(viewCounts.findById(postId)).isEmpty();
+    }
+
+    @Test
+    void trendingFavoursRecentViews() {
+        PostViewService views = views(60);
+        Long older = postIds.get(0);
+        Long newer = postIds.get(1);
+        for (int i = 0; i < 100; i++) {
+            views.recordView(older);
+        }
+        views.flush();
+        assertThat(views.getTrendingPostIds(10)).containsExactly(older);
+
+        // Two half-lives later the 100 old views weigh 25, less than 50 fresh ones
+        advance(2, TimeUnit.HOURS);
+        for (int i = 0; i < 50; i++) {
+            views.recordView(newer);
+        }
+        views.flush();
+        assertThat(views.getTrendingPostIds(10)).containsExactly(newer, older);
+
+        postRepository.deleteById(older);
+        views.forget(older);
+        views.flush();
+        assertThat(views.getTrendingPostIds(10)).containsExactly(newer);
+    }
+}
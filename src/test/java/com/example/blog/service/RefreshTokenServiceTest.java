@@ -0,0 +1,138 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.user.TokenResponseDto;
+import com.example.blog.dto.user.UserIdentity;
+import com.example.blog.entities.RefreshToken;
+import com.example.blog.entities.Role;
+import com.example.blog.entities.User;
+import com.example.blog.repository.RefreshTokenRepository;
+import com.example.blog.repository.UserRepository;
+import com.example.blog.util.JwtUtil;
+import exception.GlobalExceptionHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Revocations are published after commit, so every call here commits for real instead of rolling back
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({RefreshTokenService.class, TokenRevocationService.class, SessionRevocationService.class, JwtUtil.class})
+class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private SessionRevocationService sessionRevocation;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokens;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private UserIdentity user;
+
+    @BeforeEach
+    void createUser() {
+        User row = new User();
+        row.setName("reader");
+        row.setEmail("reader@example.com");
+        row.setPassword("secret");
+        row.setRole(Role.USER);
+        user = UserIdentity.of(userRepository.save(row));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        refreshTokens.deleteAll();
+        userRepository.deleteById(user.id());
+    }
+
+    private UUID session() {
+        List<RefreshToken> rows = refreshTokens.findAll();
+        assertThat(rows).isNotEmpty();
+        return UUID.fromString(rows.get(0).getSessionId());
+    }
+
+    @Test
+    void refreshRotatesWithinTheSession() {
+        TokenResponseDto first = refreshTokenService.startSession(user, 0);
+        TokenResponseDto second = refreshTokenService.refresh(first.getRefreshToken());
+        TokenResponseDto third = refreshTokenService.refresh(second.getRefreshToken());
+
+        assertThat(second.getRefreshToken()).isNotEqualTo(first.getRefreshToken());
+        assertThat(third.getRefreshToken()).isNotEqualTo(second.getRefreshToken());
+        assertThat(third.getToken()).isNotBlank();
+
+        List<RefreshToken> rows = refreshTokens.findAll();
+        assertThat(rows).hasSize(3);
+        assertThat(rows).extracting(RefreshToken::getSessionId).containsOnly(rows.get(0).getSessionId());
+        assertThat(rows).filteredOn(row -> row.getUsedAt() == null).hasSize(1);
+        assertThat(sessionRevocation.isRevoked(session())).isFalse();
+    }
+
+    @Test
+    void replayingAUsedTokenRevokesTheWholeSession() {
+        TokenResponseDto first = refreshTokenService.startSession(user, 0);
+        TokenResponseDto second = refreshTokenService.refresh(first.getRefreshToken());
+
+        assertThatThrownBy(() -> refreshTokenService.refresh(first.getRefreshToken()))
+                .isInstanceOf(GlobalExceptionHandler.InvalidRefreshTokenException.class)
+                .hasMessageContaining("already used");
+
+        // The legitimate holder's newer token dies with the session, and so do its access tokens
+        assertThatThrownBy(() -> refreshTokenService.refresh(second.getRefreshToken()))
+                .isInstanceOf(GlobalExceptionHandler.InvalidRefreshTokenException.class);
+        assertThat(refreshTokens.findAll()).allSatisfy(row -> assertThat(row.getRevokedAt()).isNotNull());
+        assertThat(sessionRevocation.isRevoked(session())).isTrue();
+    }
+
+    @Test
+    void expiredTokenIsRefused() {
+        TokenResponseDto tokens = refreshTokenService.startSession(user, 0);
+        RefreshToken row = refreshTokens.findAll().get(0);
+        row.setExpiresAt(Instant.now().minusSeconds(1));
+        refreshTokens.save(row);
+
+        assertThatThrownBy(() -> refreshTokenService.refresh(tokens.getRefreshToken()))
+                .isInstanceOf(GlobalExceptionHandler.InvalidRefreshTokenException.class)
+                .hasMessageContaining("no longer valid");
+        assertThat(refreshTokens.findAll().get(0).getUsedAt()).isNull();
+    }
+
+    @Test
+    void logoutRevokesTheSession() {
+        TokenResponseDto first = refreshTokenService.startSession(user, 0);
+        TokenResponseDto second = refreshTokenService.refresh(first.getRefreshToken());
+
+        refreshTokenService.endSession(second.getRefreshToken());
+
+        assertThat(sessionRevocation.isRevoked(session())).isTrue();
+        assertThatThrownBy(() -> refreshTokenService.refresh(second.getRefreshToken()))
+                .isInstanceOf(GlobalExceptionHandler.InvalidRefreshTokenException.class)
+                .hasMessageContaining("no longer valid");
+    }
+
+    @Test
+    void unknownTokenIsRefused() {
+        assertThatThrownBy(() -> refreshTokenService.refresh("not-a-token"))
+                .isInstanceOf(GlobalExceptionHandler.InvalidRefreshTokenException.class);
+        assertThatThrownBy(() -> refreshTokenService.endSession(null))
+                .isInstanceOf(GlobalExceptionHandler.InvalidRefreshTokenException.class);
+    }
+}
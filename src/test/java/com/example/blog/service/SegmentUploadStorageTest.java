@@ -0,0 +1,161 @@
+package com.example.blog.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentUploadStorageTest {
+
+    // Room for three of the 1000-byte uploads below per segment, so the fourth starts a new one
+    private static final DataSize SEGMENT_SIZE = DataSize.ofBytes(4096);
+    private static final DataSize MAX_ENTRY_SIZE = DataSize.ofBytes(2048);
+    private static final int HEADER_SIZE = 19;
+
+    @TempDir
+    private Path root;
+
+    private SegmentUploadStorage open() throws IOException {
+        return new SegmentUploadStorage(root, SEGMENT_SIZE, MAX_ENTRY_SIZE, 0.5);
+    }
+
+    private Path segmentFile(int id) {
+        return root.resolve(FileUploadStorage.SEGMENTS).resolve(String.format("segment-%06d.dat", id));
+    }
+
+    private void put(UploadStorage storage, String url, byte[] content) throws IOException {
+        Path file = Files.createTempFile(root, "upload", ".tmp");
+        Files.write(file, content);
+        storage.put(url, file);
+        Files.deleteIfExists(file);  // Plain-file storage moves it instead
+    }
+
+    private static byte[] content(int length, int seed) {
+        byte[] content = new byte[length];
+        Arrays.fill(content, (byte) seed);
+        content[0] = (byte) (seed + 1);
+        return content;
+    }
+
+    private static byte[] read(UploadStorage storage, String url) throws IOException {
+        UploadStorage.Upload upload = storage.find(url);
+        if (upload == null) {
+            return null;
+        }
+        ByteBuffer content = upload.content().duplicate();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void putFindAndDeleteRoundTrip() throws IOException {
+        SegmentUploadStorage storage = open();
+        byte[] image = content(1000, 7);
+        put(storage, "/uploads/aa/bb/first.png", image);
+
+        UploadStorage.Upload upload = storage.find("/uploads/aa/bb/first.png");
+        assertThat(upload.length()).isEqualTo(1000);
+        assertThat(upload.file()).isNull();
+        assertThat(read(storage, "/uploads/aa/bb/first.png")).isEqualTo(image);
+
+        assertThat(storage.delete("/uploads/aa/bb/first.png")).isTrue();
+        assertThat(storage.find("/uploads/aa/bb/first.png")).isNull();
+        assertThat(storage.delete("/uploads/aa/bb/first.png")).isFalse();
+
+        // Deleted records stay deleted after a restart
+        assertThat(open().find("/uploads/aa/bb/first.png")).isNull();
+    }
+
+    @Test
+    void uploadsOverTheEntryLimitStayPlainFiles() throws IOException {
+        SegmentUploadStorage storage = open();
+        byte[] image = content(3000, 3);
+        put(storage, "/uploads/cc/dd/large.png", image);
+
+        UploadStorage.Upload upload = storage.find("/uploads/cc/dd/large.png");
+        assertThat(upload.file()).isNotNull();
+        assertThat(Files.readAllBytes(upload.file())).isEqualTo(image);
+    }
+
+    @Test
+    void recordWithoutMagicIsIgnoredOnReopenAndOverwritten() throws IOException {
+        SegmentUploadStorage storage = open();
+        byte[] image = content(1000, 1);
+        String url = "/uploads/aa/bb/kept.png";
+        put(storage, url, image);
+
+        // A crash after the header and bytes of the next record were written but before its magic
+        int end = HEADER_SIZE + url.getBytes(StandardCharsets.UTF_8).length + image.length;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(1).toFile(), "rw")) {
+            file.seek(end + Integer.BYTES);
+            file.write(0);
+            file.writeLong(System.currentTimeMillis());
+            file.writeInt(500);
+            file.writeShort(10);
+            file.write(content(510, 9));
+        }
+
+        SegmentUploadStorage reopened = open();
+        assertThat(read(reopened, url)).isEqualTo(image);
+        byte[] next = content(900, 2);
+        put(reopened, "/uploads/aa/bb/next.png", next);
+
+        SegmentUploadStorage again = open();
+        assertThat(read(again, url)).isEqualTo(image);
+        assertThat(read(again, "/uploads/aa/bb/next.png")).isEqualTo(next);
+        assertThat(segmentFile(2)).doesNotExist();
+    }
+
+    @Test
+    void fullSegmentRollsOverToANewOne() throws IOException {
+        SegmentUploadStorage storage = open();
+        for (int i = 0; i < 4; i++) {
+            put(storage, "/uploads/aa/bb/" + i + ".png", content(1000, i));
+        }
+
+        assertThat(segmentFile(1)).exists();
+        assertThat(segmentFile(2)).exists();
+        for (int i = 0; i < 4; i++) {
+            assertThat(read(storage, "/uploads/aa/bb/" + i + ".png")).isEqualTo(content(1000, i));
+        }
+
+        SegmentUploadStorage reopened = open();
+        for (int i = 0; i < 4; i++) {
+            assertThat(read(reopened, "/uploads/aa/bb/" + i + ".png")).isEqualTo(content(1000, i));
+        }
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndDropsTheSegment() throws IOException {
+        SegmentUploadStorage storage = open();
+        for (int i = 0; i < 4; i++) {
+            put(storage, "/uploads/aa/bb/" + i + ".png", content(1000, i));
+        }
+        long lastModified = storage.find("/uploads/aa/bb/2.png").lastModified();
+        storage.delete("/uploads/aa/bb/0.png");
+        storage.delete("/uploads/aa/bb/1.png");
+
+        storage.compact();
+
+        assertThat(segmentFile(1)).doesNotExist();
+        assertThat(read(storage, "/uploads/aa/bb/2.png")).isEqualTo(content(1000, 2));
+        assertThat(storage.find("/uploads/aa/bb/2.png").lastModified()).isEqualTo(lastModified);
+
+        SegmentUploadStorage reopened = open();
+        assertThat(reopened.find("/uploads/aa/bb/0.png")).isNull();
+        assertThat(reopened.find("/uploads/aa/bb/1.png")).isNull();
+        assertThat(read(reopened, "/uploads/aa/bb/2.png")).isEqualTo(content(1000, 2));
+        assertThat(read(reopened, "/uploads/aa/bb/3.png")).isEqualTo(content(1000, 3));
+        assertThat(reopened.find("/uploads/aa/bb/2.png").lastModified()).isEqualTo(lastModified);
+    }
+}
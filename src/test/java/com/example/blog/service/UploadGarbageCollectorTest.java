@@ -0,0 +1,211 @@
+package com.example.blog.service;
+
+import com.example.blog.entities.Post;
+import com.example.blog.entities.Role;
+import com.example.blog.entities.Status;
+import com.example.blog.entities.StoredFile;
+import com.example.blog.entities.User;
+import com.example.blog.repository.PostRepository;
+import com.example.blog.repository.StoredFileRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UploadGarbageCollectorTest {
+
+    private static final Duration GRACE_PERIOD = Duration.ofHours(1);
+    private static final FileTime BEFORE_GRACE = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+
+    @TempDir
+    private Path root;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private StoredFileRepository storedFiles;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final UploadLocks locks = new UploadLocks();
+    private UploadStorage storage;
+
+    @BeforeEach
+    void openStorage() {
+        storage = new FileUploadStorage(root);
+    }
+
+    private UploadGarbageCollector collector(int filesPerSecond) {
+        HotImageCache hotImages = new HotImageCache(true, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), 3,
+                Duration.ofMinutes(10));
+        return new UploadGarbageCollector(storage, postRepository, storedFiles, hotImages, locks,
+                transactionManager, true, GRACE_PERIOD, filesPerSecond);
+    }
+
+    private Path upload(String url, FileTime lastModified) throws IOException {
+        Path file = root.resolve(url.substring("/uploads/".length()));
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[100]);
+        Files.setLastModifiedTime(file, lastModified);
+        return file;
+    }
+
+    private void post(String imageUrl, String thumbnailUrl) {
+        User user = new User();
+        user.setName("author");
+        user.setEmail("author@example.com");
+        user.setPassword("secret");
+        user.setRole(Role.USER);
+        entityManager.persist(user);
+
+        Post post = new Post();
+        post.setTitle("title");
+        post.setBody("body");
+        post.setStatus(Status.PUBLISHED);
+        post.setUser(user);
+        post.setImageUrl(imageUrl);
+        post.setThumbnailUrl(thumbnailUrl);
+        entityManager.persist(post);
+        entityManager.flush();
+    }
+
+    @Test
+    void deletesOnlyUnreferencedUploadsOlderThanTheGracePeriod() throws IOException {
+        Path orphan = upload("/uploads/aa/bb/orphan.png", BEFORE_GRACE);
+        Path image = upload("/uploads/aa/bb/image.png", BEFORE_GRACE);
+        Path thumbnail = upload("/uploads/aa/bb/image_thumb.jpg", BEFORE_GRACE);
+        Path recent = upload("/uploads/aa/bb/recent.png", FileTime.from(Instant.now()));
+        post("/uploads/aa/bb/image.png", "/uploads/aa/bb/image_thumb.jpg");
+        storedFiles.save(new StoredFile("ab".repeat(32), "/uploads/aa/bb/orphan.png", 100, Instant.now()));
+
+        UploadGarbageCollector.Result result = collector(1000).collect();
+
+        assertThat(result.scanned()).isEqualTo(4);
+        assertThat(result.deleted()).isEqualTo(1);
+        assertThat(result.reclaimedBytes()).isEqualTo(100);
+        assertThat(orphan).doesNotExist();
+        assertThat(image).exists();
+        assertThat(thumbnail).exists();
+        assertThat(recent).exists();
+        assertThat(storedFiles.findByUrl("/uploads/aa/bb/orphan.png")).isEmpty();
+    }
+
+    @Test
+    void sweepsTemporaryFilesLeftBehindByACrash() throws IOException {
+        Files.createDirectories(storage.incomingDir());
+        Path stale = Files.write(storage.incomingDir().resolve("upload1.tmp"), new byte[10]);
+        Files.setLastModifiedTime(stale, BEFORE_GRACE);
+        Path inProgress = Files.write(storage.incomingDir().resolve("upload2.tmp"), new byte[10]);
+
+        UploadGarbageCollector.Result result = collector(1000).collect();
+
+        assertThat(result.deleted()).isEqualTo(1);
+        assertThat(stale).doesNotExist();
+        assertThat(inProgress).exists();
+    }
+
+    @Test
+    void reusedUploadIsKept() throws IOException {
+        Path reused = upload("/uploads/aa/bb/reused.png", BEFORE_GRACE);
+        ImageUploadService imageUploads = new ImageUploadService(storage, storedFiles, locks, DataSize.ofMegabytes(1));
+        assertThat(imageUploads.touchIfPresent("/uploads/aa/bb/reused.png")).isTrue();
+
+        collector(1000).collect();
+
+        assertThat(reused).exists();
+    }
+
+    @Test
+    void reuseRacingTheDeleteNeverReportsAFileThatIsGone() throws Exception {
+        String url = "/uploads/aa/bb/raced.png";
+        upload(url, BEFORE_GRACE);
+        CountDownLatch sweepLooking = new CountDownLatch(1);
+        CountDownLatch reuseStarting = new CountDownLatch(1);
+        AtomicBoolean armed = new AtomicBoolean(true);
+
+        // Holds the sweep between its last look and the delete while a reuse of the same file comes in
+        storage = new FileUploadStorage(root) {
+            @Override
+            public Upload find(String found) throws IOException {
+                Upload upload = super.find(found);
+                if (found.equals(url) && armed.compareAndSet(true, false)) {
+                    sweepLooking.countDown();
+                    awaitQuietly(reuseStarting);
+                    sleepQuietly(200);
+                }
+                return upload;
+            }
+        };
+        ImageUploadService imageUploads = new ImageUploadService(storage, storedFiles, locks, DataSize.ofMegabytes(1));
+        CompletableFuture<Boolean> reuse = CompletableFuture.supplyAsync(() -> {
+            awaitQuietly(sweepLooking);
+            reuseStarting.countDown();
+            try {
+                return imageUploads.touchIfPresent(url);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        collector(1000).collect();
+
+        // The reuse waited for the delete, found nothing and would store the bytes again
+        assertThat(reuse.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(storage.find(url)).isNull();
+    }
+
+    @Test
+    void walkIsPacedToTheConfiguredRate() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            upload("/uploads/aa/bb/" + i + ".png", FileTime.from(Instant.now()));
+        }
+
+        long started = System.nanoTime();
+        UploadGarbageCollector.Result result = collector(20).collect();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(result.scanned()).isEqualTo(10);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(450);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
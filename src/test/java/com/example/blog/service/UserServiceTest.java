@@ -0,0 +1,147 @@
+package com.example.blog.service;
+
+import com.example.blog.dto.user.UserRequestDto;
+import com.example.blog.entities.Comment;
+import com.example.blog.entities.Post;
+import com.example.blog.entities.PostViewCount;
+import com.example.blog.entities.Role;
+import com.example.blog.entities.Status;
+import com.example.blog.entities.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UserService.class, TokenRevocationService.class, UserIdentityCache.class, PostCacheService.class,
+        PostSearchService.class, PostViewService.class})
+class UserServiceTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserService userService;
+
+    private User author;
+    private User commenter;
+    private Post authorsPost;
+    private Post commentersPost;
+
+    @BeforeEach
+    void seed() {
+        author = user("author");
+        commenter = user("commenter");
+        authorsPost = post(author);
+        commentersPost = post(commenter);
+
+        comment(authorsPost, commenter);
+        comment(authorsPost, commenter);
+        comment(authorsPost, author);
+        comment(commentersPost, author);
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        user.setRole(Role.USER);
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Post post(User user) {
+        Post post = new Post();
+        post.setTitle("title");
+        post.setBody("body");
+        post.setStatus(Status.PUBLISHED);
+        post.setUser(user);
+        entityManager.persist(post);
+        return post;
+    }
+
+    // Counters are kept by UPDATE statements, so the seed keeps them in step the same way
+    private void comment(Post post, User user) {
+        Comment comment = new Comment();
+        comment.setBody("comment");
+        comment.setCreatedAt(LocalDateTime.now());
+        comment.setPost(post);
+        comment.setUser(user);
+        entityManager.persist(comment);
+        entityManager.flush();
+        entityManager.createQuery("update Post p set p.commentCount = p.commentCount + 1 where p.id = :id")
+                .setParameter("id", post.getId())
+                .executeUpdate();
+    }
+
+    private long countComments(Post post) {
+        return entityManager.createQuery("select count(c) from Comment c where c.post.id = :id", Long.class)
+                .setParameter("id", post.getId())
+                .getSingleResult();
+    }
+
+    @Test
+    void deletingAUserTakesTheirCommentsOutOfOtherPostsCounts() {
+        long revision = entityManager.find(Post.class, authorsPost.getId()).getRevision();
+        entityManager.persist(new PostViewCount(commentersPost.getId(), 5));
+        entityManager.flush();
+        entityManager.clear();
+
+        userService.deleteUserAccount(commenter.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        Post post = entityManager.find(Post.class, authorsPost.getId());
+        assertThat(countComments(post)).isEqualTo(1);
+        assertThat(post.getCommentCount()).isEqualTo(1);
+        assertThat(post.getRevision()).isGreaterThan(revision);
+
+        assertThat(entityManager.find(Post.class, commentersPost.getId())).isNull();
+        assertThat(entityManager.find(PostViewCount.class, commentersPost.getId())).isNull();
+        assertThat(entityManager.find(User.class, commenter.getId())).isNull();
+    }
+
+    @Test
+    void renamingAUserMovesTheRevisionOfEveryPostShowingThem() {
+        long authorsRevision = entityManager.find(Post.class, authorsPost.getId()).getRevision();
+        long commentersRevision = entityManager.find(Post.class, commentersPost.getId()).getRevision();
+        entityManager.clear();
+
+        UserRequestDto rename = new UserRequestDto();
+        rename.setName("renamed");
+        userService.updateUserProfile(author.getId(), rename);
+        entityManager.flush();
+        entityManager.clear();
+
+        // One post they wrote, one they only commented on
+        assertThat(entityManager.find(Post.class, authorsPost.getId()).getRevision()).isGreaterThan(authorsRevision);
+        assertThat(entityManager.find(Post.class, commentersPost.getId()).getRevision())
+                .isGreaterThan(commentersRevision);
+    }
+
+    @Test
+    void unchangedProfileLeavesRevisionsAlone() {
+        long revision = entityManager.find(Post.class, authorsPost.getId()).getRevision();
+        entityManager.clear();
+
+        UserRequestDto same = new UserRequestDto();
+        same.setName("author");
+        userService.updateUserProfile(author.getId(), same);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(entityManager.find(Post.class, authorsPost.getId()).getRevision()).isEqualTo(revision);
+    }
+}
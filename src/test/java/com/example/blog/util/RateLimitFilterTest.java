@@ -0,0 +1,98 @@
+package com.example.blog.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    // Auth: one request a second, bursts of 3. Writes: one every 10 seconds, no burst. Reads: 600 a minute
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void createFilter() {
+        filter = new RateLimitFilter(new ObjectMapper(), true, 1000, 60, 3, 6, 1, 600, 100, now::get);
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String clientIp) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(clientIp);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private void advance(long amount, TimeUnit unit) {
+        now.addAndGet(unit.toNanos(amount));
+    }
+
+    @Test
+    void burstIsAllowedAndThenRefused() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(send("POST", "/auth/login", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+
+        MockHttpServletResponse refused = send("POST", "/auth/login", "10.0.0.1");
+        assertThat(refused.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(refused.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(refused.getContentAsString()).contains("Too many requests");
+
+        // Another client has its own bucket
+        assertThat(send("POST", "/auth/login", "10.0.0.2").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void emptyBucketRefillsAtTheSteadyRate() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            send("POST", "/auth/login", "10.0.0.1");
+        }
+
+        for (int second = 0; second < 5; second++) {
+            advance(1, TimeUnit.SECONDS);
+            assertThat(send("POST", "/auth/register", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+            assertThat(send("POST", "/auth/login", "10.0.0.1").getStatus())
+                    .isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        }
+
+        // Idle long enough, the whole burst is available again
+        advance(3, TimeUnit.SECONDS);
+        for (int i = 0; i < 3; i++) {
+            assertThat(send("POST", "/auth/login", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+        assertThat(send("POST", "/auth/login", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void retryAfterIsTheWaitRoundedUpToWholeSeconds() throws Exception {
+        assertThat(send("POST", "/api/post", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(send("POST", "/api/post", "10.0.0.1").getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("10");
+
+        advance(7500, TimeUnit.MILLISECONDS);
+        assertThat(send("DELETE", "/api/posts/1", "10.0.0.1").getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+
+        advance(2500, TimeUnit.MILLISECONDS);
+        assertThat(send("PUT", "/api/posts/1", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void groupsAreLimitedSeparately() throws Exception {
+        send("POST", "/api/post", "10.0.0.1");
+        assertThat(send("POST", "/api/post", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        assertThat(send("GET", "/api/posts", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(send("POST", "/auth/login", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+}